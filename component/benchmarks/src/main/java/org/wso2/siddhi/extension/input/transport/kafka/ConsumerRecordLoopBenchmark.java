@@ -0,0 +1,119 @@
+/*
+ * Copyright (c) 2017, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ * WSO2 Inc. licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.wso2.siddhi.extension.input.transport.kafka;
+
+import org.apache.kafka.clients.consumer.ConsumerRecord;
+import org.apache.kafka.clients.consumer.MockConsumer;
+import org.apache.kafka.clients.consumer.OffsetResetStrategy;
+import org.apache.kafka.common.TopicPartition;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.wso2.siddhi.core.stream.input.source.SourceEventListener;
+
+import java.util.Collections;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Record loop of {@link KafkaConsumerThread} polling a mock consumer, from polling the records to handing their
+ * events over to siddhi, for each way of processing the records.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ConsumerRecordLoopBenchmark {
+    private static final int RECORDS_PER_INVOCATION = 500;
+    private static final String TOPIC = "kafka_topic";
+    private static final String VALUE = "WSO2,55.6,100";
+
+    @Param({"inline", "pipelined", "parallel"})
+    public String processing;
+
+    @Param({"false", "true"})
+    public boolean batchDelivery;
+
+    private MockConsumer<Object, Object> consumer;
+    private KafkaConsumerThread consumerThread;
+    private ExecutorService executorService;
+    private final AtomicLong deliveredEvents = new AtomicLong();
+    private long nextOffset;
+
+    @Setup
+    public void setup() {
+        ConsumerOptions consumerOptions = new ConsumerOptions();
+        consumerOptions.setBatchDelivery(batchDelivery);
+        consumerOptions.setBatchMaxSize(RECORDS_PER_INVOCATION);
+        consumerOptions.setMinPollTimeout(0);
+        consumerOptions.setMaxPollTimeout(0);
+        consumerOptions.setCommitBatchSize(10000);
+        consumerOptions.setCommitInterval(1000);
+        if ("pipelined".equals(processing)) {
+            consumerOptions.setPipelineBufferSize(16);
+        } else if ("parallel".equals(processing)) {
+            consumerOptions.setWorkerCount(2);
+            consumerOptions.setWorkerBufferSize(1024);
+        }
+        consumer = new MockConsumer<>(OffsetResetStrategy.EARLIEST);
+        consumer.updateBeginningOffsets(Collections.singletonMap(new TopicPartition(TOPIC, 0), 0L));
+        SourceEventListener sourceEventListener = event -> deliveredEvents.addAndGet(
+                event instanceof Object[] ? ((Object[]) event).length : 1);
+        consumerThread = new KafkaConsumerThread(sourceEventListener, new String[]{TOPIC}, new String[]{"0"},
+                consumer, new TopicOffsetTable(), consumerOptions, new KafkaSourceMetrics());
+        executorService = Executors.newCachedThreadPool(new KafkaThreadFactory("KafkaConsumerBenchmark", true));
+        RecordProcessor recordProcessor = consumerThread.getRecordProcessor();
+        if (null != recordProcessor) {
+            recordProcessor.start(executorService);
+        }
+        executorService.submit(consumerThread);
+    }
+
+    @TearDown
+    public void tearDown() {
+        consumerThread.shutdownConsumer();
+        executorService.shutdown();
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(RECORDS_PER_INVOCATION)
+    public void recordLoop() {
+        for (int i = 0; i < RECORDS_PER_INVOCATION; i++) {
+            consumer.addRecord(new ConsumerRecord<>(TOPIC, 0, nextOffset++, null, VALUE));
+        }
+        // Waits for the consumer thread to deliver the records, the records are only added by this thread
+        while (deliveredEvents.get() < nextOffset) {
+            Thread.yield();
+        }
+    }
+}
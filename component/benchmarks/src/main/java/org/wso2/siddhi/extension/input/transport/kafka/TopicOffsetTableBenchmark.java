@@ -0,0 +1,87 @@
+/*
+ * Copyright (c) 2017, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ * WSO2 Inc. licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.wso2.siddhi.extension.input.transport.kafka;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Offset bookkeeping done for every record delivered by the Kafka source, and the snapshots taken of it.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class TopicOffsetTableBenchmark {
+    private static final String TOPIC = "kafka_topic";
+
+    @Param({"1", "64"})
+    public int partitions;
+
+    private TopicOffsetTable topicOffsetTable;
+
+    @Setup
+    public void setup() {
+        topicOffsetTable = new TopicOffsetTable();
+        for (int partition = 0; partition < partitions; partition++) {
+            topicOffsetTable.update(TOPIC, partition, 0);
+        }
+    }
+
+    @Benchmark
+    public void update(Cursor cursor) {
+        cursor.partition = cursor.partition + 1 == partitions ? 0 : cursor.partition + 1;
+        topicOffsetTable.update(TOPIC, cursor.partition, cursor.offset++);
+    }
+
+    @Benchmark
+    @Threads(4)
+    public void concurrentUpdate(Cursor cursor) {
+        update(cursor);
+    }
+
+    @Benchmark
+    public Map<String, Map<Integer, Long>> snapshot() {
+        return topicOffsetTable.snapshot();
+    }
+
+    /**
+     * Partition and offset updated next by a benchmark thread.
+     */
+    @State(Scope.Thread)
+    public static class Cursor {
+        private int partition;
+        private long offset;
+    }
+}
@@ -0,0 +1,68 @@
+/*
+ * Copyright (c) 2017, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ * WSO2 Inc. licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.wso2.siddhi.extension.kafka.benchmark;
+
+import kafka.server.KafkaConfig;
+import kafka.server.KafkaServerStartable;
+import org.apache.commons.io.FileUtils;
+import org.apache.curator.test.TestingServer;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.Properties;
+
+/**
+ * Single Kafka broker and zookeeper running in the benchmark JVM, listening on localhost:9092. Topics are created
+ * when they are first used.
+ */
+class EmbeddedKafkaBroker {
+    static final String BOOTSTRAP_SERVERS = "localhost:9092";
+    private TestingServer zkTestServer;
+    private KafkaServerStartable kafkaServer;
+    private File logDir;
+
+    void start(int partitions) throws Exception {
+        logDir = Files.createTempDirectory("kafka-benchmark").toFile();
+        zkTestServer = new TestingServer(2181);
+        Properties props = new Properties();
+        props.put("broker.id", "0");
+        props.put("host.name", "localhost");
+        props.put("port", "9092");
+        props.put("log.dir", logDir.getAbsolutePath());
+        props.put("zookeeper.connect", zkTestServer.getConnectString());
+        props.put("auto.create.topics.enable", "true");
+        props.put("num.partitions", String.valueOf(partitions));
+        kafkaServer = new KafkaServerStartable(new KafkaConfig(props));
+        kafkaServer.startup();
+    }
+
+    void stop() throws IOException {
+        if (null != kafkaServer) {
+            kafkaServer.shutdown();
+            kafkaServer.awaitShutdown();
+        }
+        if (null != zkTestServer) {
+            zkTestServer.stop();
+        }
+        if (null != logDir) {
+            FileUtils.deleteDirectory(logDir);
+        }
+    }
+}
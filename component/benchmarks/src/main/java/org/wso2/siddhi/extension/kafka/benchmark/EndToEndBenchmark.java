@@ -0,0 +1,147 @@
+/*
+ * Copyright (c) 2017, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ * WSO2 Inc. licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.wso2.siddhi.extension.kafka.benchmark;
+
+import org.apache.kafka.clients.consumer.ConsumerRecords;
+import org.apache.kafka.clients.consumer.KafkaConsumer;
+import org.apache.kafka.clients.producer.KafkaProducer;
+import org.apache.kafka.clients.producer.Producer;
+import org.apache.kafka.clients.producer.ProducerRecord;
+import org.apache.kafka.common.errors.WakeupException;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.wso2.siddhi.core.ExecutionPlanRuntime;
+import org.wso2.siddhi.core.SiddhiManager;
+import org.wso2.siddhi.extension.input.mapper.text.TextSourceMapper;
+import org.wso2.siddhi.extension.output.mapper.text.TextSinkMapper;
+
+import java.util.Collections;
+import java.util.Properties;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Events flowing from an input topic through the Kafka source, a query and the Kafka sink to an output topic of an
+ * embedded broker. An invocation publishes a batch of events and completes once all of them reach the output topic.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 5)
+@Measurement(iterations = 5, time = 5)
+@Fork(1)
+public class EndToEndBenchmark {
+    private static final int EVENTS_PER_INVOCATION = 1000;
+    private static final String INPUT_TOPIC = "benchmark_input";
+    private static final String OUTPUT_TOPIC = "benchmark_output";
+    private static final String MESSAGE = "WSO2,55.6,100";
+
+    private final EmbeddedKafkaBroker broker = new EmbeddedKafkaBroker();
+    private final AtomicLong outputRecords = new AtomicLong();
+    private SiddhiManager siddhiManager;
+    private ExecutionPlanRuntime executionPlanRuntime;
+    private Producer<String, String> producer;
+    private KafkaConsumer<String, String> outputConsumer;
+    private Thread outputConsumerThread;
+    private long publishedEvents;
+
+    @Setup
+    public void setup() throws Exception {
+        broker.start(1);
+        siddhiManager = new SiddhiManager();
+        siddhiManager.setExtension("source.mapper:text", TextSourceMapper.class);
+        siddhiManager.setExtension("sinkMapper:text", TextSinkMapper.class);
+        executionPlanRuntime = siddhiManager.createExecutionPlanRuntime(
+                "@Plan:name('EndToEndBenchmark') " +
+                        "@source(type='kafka', topic='" + INPUT_TOPIC + "', group.id='benchmark', " +
+                        "threading.option='single.thread', bootstrap.servers='" +
+                        EmbeddedKafkaBroker.BOOTSTRAP_SERVERS + "', @map(type='text'))" +
+                        "define stream FooStream (symbol string, price float, volume long); " +
+                        "@sink(type='kafka', topic='" + OUTPUT_TOPIC + "', bootstrap.servers='" +
+                        EmbeddedKafkaBroker.BOOTSTRAP_SERVERS + "', @map(type='text'))" +
+                        "define stream BarStream (symbol string, price float, volume long);" +
+                        "from FooStream select symbol, price, volume insert into BarStream;");
+        executionPlanRuntime.start();
+
+        Properties producerProps = new Properties();
+        producerProps.put("bootstrap.servers", EmbeddedKafkaBroker.BOOTSTRAP_SERVERS);
+        producerProps.put("linger.ms", "1");
+        producerProps.put("key.serializer", "org.apache.kafka.common.serialization.StringSerializer");
+        producerProps.put("value.serializer", "org.apache.kafka.common.serialization.StringSerializer");
+        producer = new KafkaProducer<>(producerProps);
+
+        Properties consumerProps = new Properties();
+        consumerProps.put("bootstrap.servers", EmbeddedKafkaBroker.BOOTSTRAP_SERVERS);
+        consumerProps.put("group.id", "benchmark-output");
+        consumerProps.put("auto.offset.reset", "earliest");
+        consumerProps.put("key.deserializer", "org.apache.kafka.common.serialization.StringDeserializer");
+        consumerProps.put("value.deserializer", "org.apache.kafka.common.serialization.StringDeserializer");
+        outputConsumer = new KafkaConsumer<>(consumerProps);
+        outputConsumer.subscribe(Collections.singletonList(OUTPUT_TOPIC));
+        outputConsumerThread = new Thread(this::countOutputRecords, "EndToEndBenchmark-OutputConsumer");
+        outputConsumerThread.setDaemon(true);
+        outputConsumerThread.start();
+    }
+
+    private void countOutputRecords() {
+        try {
+            while (!Thread.currentThread().isInterrupted()) {
+                ConsumerRecords<String, String> records = outputConsumer.poll(100);
+                outputRecords.addAndGet(records.count());
+            }
+        } catch (WakeupException e) {
+            // Woken up to stop
+        } finally {
+            outputConsumer.close();
+        }
+    }
+
+    @TearDown
+    public void tearDown() throws Exception {
+        outputConsumer.wakeup();
+        outputConsumerThread.join();
+        producer.close();
+        executionPlanRuntime.shutdown();
+        siddhiManager.shutdown();
+        broker.stop();
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(EVENTS_PER_INVOCATION)
+    public void sourceQuerySink() throws InterruptedException {
+        for (int i = 0; i < EVENTS_PER_INVOCATION; i++) {
+            producer.send(new ProducerRecord<>(INPUT_TOPIC, MESSAGE));
+        }
+        producer.flush();
+        publishedEvents += EVENTS_PER_INVOCATION;
+        while (outputRecords.get() < publishedEvents) {
+            Thread.sleep(1);
+        }
+    }
+}
@@ -0,0 +1,111 @@
+/*
+ * Copyright (c) 2017, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ * WSO2 Inc. licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.wso2.siddhi.extension.output.transport.kafka;
+
+import org.apache.kafka.clients.producer.KafkaProducer;
+import org.apache.kafka.clients.producer.MockProducer;
+import org.apache.kafka.common.serialization.ByteArraySerializer;
+import org.apache.kafka.common.serialization.StringSerializer;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.wso2.siddhi.core.ExecutionPlanRuntime;
+import org.wso2.siddhi.core.SiddhiManager;
+import org.wso2.siddhi.core.stream.input.InputHandler;
+import org.wso2.siddhi.extension.output.mapper.text.TextSinkMapper;
+
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Publishing events through {@link KafkaSink} in an execution plan, with the producer replaced by a mock producer
+ * which acknowledges records right away, covering mapping, routing, aggregation and the publish window.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class KafkaSinkPublishBenchmark {
+    private static final Object[] EVENT = new Object[]{"WSO2", 55.6f, 100L};
+
+    @Param({"none", "newline"})
+    public String recordFraming;
+
+    @Param({"", "{{symbol}}"})
+    public String key;
+
+    private final List<MockProducer<String, byte[]>> producers = new CopyOnWriteArrayList<>();
+    private SiddhiManager siddhiManager;
+    private ExecutionPlanRuntime executionPlanRuntime;
+    private InputHandler inputHandler;
+
+    @Setup
+    public void setup() {
+        KafkaProducerPool.setProducerFactory(props -> {
+            MockProducer<String, byte[]> producer = new MockProducer<>(true, new StringSerializer(),
+                    new ByteArraySerializer());
+            producers.add(producer);
+            return producer;
+        });
+        siddhiManager = new SiddhiManager();
+        siddhiManager.setExtension("sinkMapper:text", TextSinkMapper.class);
+        executionPlanRuntime = siddhiManager.createExecutionPlanRuntime(
+                "@Plan:name('KafkaSinkPublishBenchmark') " +
+                        "define stream FooStream (symbol string, price float, volume long); " +
+                        "@sink(type='kafka', topic='kafka_topic', bootstrap.servers='localhost:9092', " +
+                        (key.isEmpty() ? "" : "key='" + key + "', ") +
+                        "record.framing='" + recordFraming + "', " +
+                        "@map(type='text'))" +
+                        "define stream BarStream (symbol string, price float, volume long);" +
+                        "from FooStream select symbol, price, volume insert into BarStream;");
+        inputHandler = executionPlanRuntime.getInputHandler("FooStream");
+        executionPlanRuntime.start();
+    }
+
+    @TearDown(Level.Iteration)
+    public void clearSentRecords() {
+        // The mock producer keeps all records it was sent
+        producers.forEach(MockProducer::clear);
+    }
+
+    @TearDown
+    public void tearDown() {
+        executionPlanRuntime.shutdown();
+        siddhiManager.shutdown();
+        KafkaProducerPool.setProducerFactory(KafkaProducer::new);
+    }
+
+    @Benchmark
+    public void publish() throws InterruptedException {
+        inputHandler.send(EVENT);
+    }
+}
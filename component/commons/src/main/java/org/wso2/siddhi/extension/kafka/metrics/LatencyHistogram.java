@@ -0,0 +1,99 @@
+/*
+ * Copyright (c) 2017, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ * WSO2 Inc. licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.wso2.siddhi.extension.kafka.metrics;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Histogram of durations in nanoseconds with a bucket per power of two. Buckets are striped counters, hence recording
+ * neither allocates nor blocks and can be done from several threads on the hot path, at the cost of percentiles only
+ * being accurate to a factor of two.
+ */
+public class LatencyHistogram {
+    private static final int BUCKET_COUNT = 64;
+    // Bucket i holds the values in [2^(i-1), 2^i), bucket 0 holds 0
+    private final LongAdder buckets[] = new LongAdder[BUCKET_COUNT];
+    private final LongAdder sum = new LongAdder();
+    private final AtomicLong max = new AtomicLong();
+
+    public LatencyHistogram() {
+        for (int i = 0; i < BUCKET_COUNT; i++) {
+            buckets[i] = new LongAdder();
+        }
+    }
+
+    public void record(long nanos) {
+        if (nanos < 0) {
+            // System.nanoTime is not guaranteed to be monotonic on every platform
+            nanos = 0;
+        }
+        buckets[BUCKET_COUNT - Long.numberOfLeadingZeros(nanos)].increment();
+        sum.add(nanos);
+        long currentMax = max.get();
+        while (nanos > currentMax && !max.compareAndSet(currentMax, nanos)) {
+            currentMax = max.get();
+        }
+    }
+
+    public long getCount() {
+        long count = 0;
+        for (LongAdder bucket : buckets) {
+            count += bucket.sum();
+        }
+        return count;
+    }
+
+    public long getMax() {
+        return max.get();
+    }
+
+    /**
+     * @param quantile quantile in the range (0, 1]
+     * @return upper bound of the bucket holding the given quantile, which is at most the recorded maximum
+     */
+    public long getValueAtQuantile(double quantile) {
+        long counts[] = new long[BUCKET_COUNT];
+        long count = 0;
+        for (int i = 0; i < BUCKET_COUNT; i++) {
+            counts[i] = buckets[i].sum();
+            count += counts[i];
+        }
+        long rank = (long) Math.ceil(quantile * count);
+        long seen = 0;
+        for (int i = 0; i < BUCKET_COUNT; i++) {
+            seen += counts[i];
+            if (seen >= rank && counts[i] > 0) {
+                long upperBound = i == BUCKET_COUNT - 1 ? Long.MAX_VALUE : (1L << i) - 1;
+                return Math.min(upperBound, max.get());
+            }
+        }
+        return 0;
+    }
+
+    public LatencyStats snapshot() {
+        long count = getCount();
+        return new LatencyStats(count, count == 0 ? 0 : toMicros(sum.sum()) / count,
+                toMicros(getValueAtQuantile(0.5)), toMicros(getValueAtQuantile(0.99)), toMicros(max.get()));
+    }
+
+    private static double toMicros(long nanos) {
+        return nanos / 1000d;
+    }
+}
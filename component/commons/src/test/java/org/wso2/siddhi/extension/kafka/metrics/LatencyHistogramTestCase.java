@@ -0,0 +1,56 @@
+/*
+ * Copyright (c) 2017, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ * WSO2 Inc. licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.wso2.siddhi.extension.kafka.metrics;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class LatencyHistogramTestCase {
+
+    @Test
+    public void testQuantiles() {
+        LatencyHistogram histogram = new LatencyHistogram();
+        for (int i = 1; i <= 99; i++) {
+            histogram.record(1000);
+        }
+        histogram.record(1000000);
+        assertEquals(100, histogram.getCount());
+        assertEquals(1000000, histogram.getMax());
+        long median = histogram.getValueAtQuantile(0.5);
+        assertTrue("Median " + median + " is not within a factor of two", median >= 1000 && median < 2000);
+        assertEquals(1000000, histogram.getValueAtQuantile(1));
+
+        LatencyStats stats = histogram.snapshot();
+        assertEquals(100, stats.getCount());
+        assertEquals(1000, stats.getMaxMicros(), 0);
+        assertEquals((99 * 1000 + 1000000) / 100000d, stats.getMeanMicros(), 0.001);
+    }
+
+    @Test
+    public void testEmptyAndNegative() {
+        LatencyHistogram histogram = new LatencyHistogram();
+        assertEquals(0, histogram.getValueAtQuantile(0.99));
+        assertEquals(0, histogram.snapshot().getMeanMicros(), 0);
+        histogram.record(-5);
+        assertEquals(1, histogram.getCount());
+        assertEquals(0, histogram.getMax());
+    }
+}
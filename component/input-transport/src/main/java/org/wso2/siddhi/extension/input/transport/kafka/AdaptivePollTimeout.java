@@ -0,0 +1,77 @@
+/*
+ * Copyright (c) 2017, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ * WSO2 Inc. licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.wso2.siddhi.extension.input.transport.kafka;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Adapts the poll timeout of a consumer thread between the configured floor and ceiling. Consecutive empty polls
+ * double the timeout so that idle topics wake the thread up less often. A poll that is full compared to the recent
+ * polls, or whose records took longer to process than the timeout, means records are backlogged and drops the timeout
+ * to the floor, while a sparse poll halves it so that a trickle of records does not keep the thread spinning.
+ */
+class AdaptivePollTimeout {
+    // Fraction of the largest recent poll from which a poll counts as full
+    static final double FULL_FILL_RATIO = 0.5;
+    // Decay of the largest recent poll per poll, so that an old burst does not make later polls look sparse
+    private static final double PEAK_DECAY = 0.99;
+    private final long minTimeout;
+    private final long maxTimeout;
+    private long timeout;
+    private double peakRecordCount;
+
+    AdaptivePollTimeout(long minTimeout, long maxTimeout) {
+        if (minTimeout < 0 || maxTimeout < minTimeout) {
+            throw new IllegalArgumentException("Invalid poll timeout bounds, min: " + minTimeout + ", max: "
+                    + maxTimeout);
+        }
+        this.minTimeout = minTimeout;
+        this.maxTimeout = maxTimeout;
+        this.timeout = minTimeout;
+    }
+
+    long getTimeout() {
+        return timeout;
+    }
+
+    long getMinTimeout() {
+        return minTimeout;
+    }
+
+    /**
+     * @param recordCount     number of records returned by the poll
+     * @param processingNanos time taken to process or hand over the records of the poll
+     */
+    void onPoll(int recordCount, long processingNanos) {
+        if (minTimeout == maxTimeout) {
+            return;
+        }
+        if (recordCount == 0) {
+            timeout = Math.min(maxTimeout, Math.max(1, timeout * 2));
+            return;
+        }
+        peakRecordCount = Math.max(recordCount, peakRecordCount * PEAK_DECAY);
+        if (recordCount >= peakRecordCount * FULL_FILL_RATIO
+                || processingNanos >= TimeUnit.MILLISECONDS.toNanos(timeout)) {
+            timeout = minTimeout;
+        } else {
+            timeout = Math.max(minTimeout, timeout / 2);
+        }
+    }
+}
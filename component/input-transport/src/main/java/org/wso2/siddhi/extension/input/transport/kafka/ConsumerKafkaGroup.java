@@ -18,16 +18,21 @@
 
 package org.wso2.siddhi.extension.input.transport.kafka;
 
+import org.apache.kafka.clients.consumer.Consumer;
+import org.apache.kafka.clients.consumer.KafkaConsumer;
 import org.apache.log4j.Logger;
 import org.wso2.siddhi.core.stream.input.source.SourceEventListener;
 
-import java.util.ArrayList;
 import java.util.Arrays;
-import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Properties;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
 import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Function;
 
 /**
  * This processes the Kafka messages using a thread pool.
@@ -37,26 +42,49 @@ public class ConsumerKafkaGroup {
     private final String topics[];
     private final String partitions[];
     private final Properties props;
-    private List<KafkaConsumerThread> kafkaConsumerThreadList = new ArrayList<>();
-    private Map<String, Map<Integer, Long>> topicOffsetMap = new HashMap<>();
-    private ScheduledExecutorService executorService;
+    private final Function<Properties, Consumer<Object, Object>> consumerFactory;
+    // Consumers of an elastic group are added and removed while the source runs
+    private List<KafkaConsumerThread> kafkaConsumerThreadList = new CopyOnWriteArrayList<>();
+    private TopicOffsetTable topicOffsetTable;
+    private ExecutorService executorService;
     private String threadingOption;
+    private ConsumerOptions consumerOptions;
+    private KafkaSourceMetrics sourceMetrics;
+    // Only set for the elastic threading option
+    private ScheduledExecutorService scalingExecutorService;
+    private volatile boolean paused;
 
-    ConsumerKafkaGroup(String topics[], String partitions[], Properties props, Map<String, Map<Integer, Long>>
-            topicOffsetMap, String threadingOption, ScheduledExecutorService executorService) {
+    ConsumerKafkaGroup(String topics[], String partitions[], Properties props, TopicOffsetTable topicOffsetTable,
+                       String threadingOption, ConsumerOptions consumerOptions, KafkaSourceMetrics sourceMetrics) {
+        this(topics, partitions, props, topicOffsetTable, threadingOption, consumerOptions, sourceMetrics,
+                KafkaConsumer::new);
+    }
+
+    /**
+     * Creates a group whose consumers are created by the given factory, such as mock consumers in tests.
+     */
+    ConsumerKafkaGroup(String topics[], String partitions[], Properties props, TopicOffsetTable topicOffsetTable,
+                       String threadingOption, ConsumerOptions consumerOptions, KafkaSourceMetrics sourceMetrics,
+                       Function<Properties, Consumer<Object, Object>> consumerFactory) {
+        this.consumerFactory = consumerFactory;
         this.threadingOption = threadingOption;
-        this.topicOffsetMap = topicOffsetMap;
+        this.consumerOptions = consumerOptions;
+        this.sourceMetrics = sourceMetrics;
+        this.topicOffsetTable = topicOffsetTable;
         this.topics = topics;
         this.partitions = partitions;
         this.props = props;
-        this.executorService = executorService;
+        this.executorService = Executors.newCachedThreadPool(new KafkaThreadFactory("KafkaConsumer-"
+                + String.join(",", topics), consumerOptions.isDaemonThreads()));
     }
 
     void pause() {
+        paused = true;
         kafkaConsumerThreadList.forEach(KafkaConsumerThread::pause);
     }
 
     void resume() {
+        paused = false;
         kafkaConsumerThreadList.forEach(KafkaConsumerThread::resume);
     }
 
@@ -64,25 +92,39 @@ public class ConsumerKafkaGroup {
         kafkaConsumerThreadList.forEach(kafkaConsumerThread -> kafkaConsumerThread.restore(topic));
     }
 
-    void shutdown() {
+    boolean isCommitOnSnapshot() {
+        return consumerOptions.isCommitOnSnapshot();
+    }
+
+    void commitOnSnapshot(Map<String, Map<Integer, Long>> topicOffsetMap) {
+        kafkaConsumerThreadList.forEach(kafkaConsumerThread -> kafkaConsumerThread.commitOnSnapshot(topicOffsetMap));
+    }
+
+    synchronized void shutdown() {
+        if (null != scalingExecutorService) {
+            scalingExecutorService.shutdownNow();
+        }
         kafkaConsumerThreadList.forEach(KafkaConsumerThread::shutdownConsumer);
+        // Consumer threads close their consumers on their own once woken up, hence there is no need to wait here
+        executorService.shutdown();
     }
 
     void run(SourceEventListener sourceEventListener) {
         try {
             if (KafkaSource.SINGLE_THREADED.equals(threadingOption)) {
-                KafkaConsumerThread kafkaConsumerThread =
-                        new KafkaConsumerThread(sourceEventListener, topics, partitions, props, topicOffsetMap);
+                KafkaConsumerThread kafkaConsumerThread = newConsumerThread(sourceEventListener, topics,
+                        partitions);
                 kafkaConsumerThreadList.add(kafkaConsumerThread);
+                startRecordProcessor(kafkaConsumerThread);
+                executorService.submit(kafkaConsumerThread);
                 log.info("Kafka Consumer thread starting to listen on topic/s: " + Arrays.toString(topics) +
                         " with partition/s: " + Arrays.toString(partitions));
-                kafkaConsumerThread.run();
             } else if (KafkaSource.TOPIC_WISE.equals(threadingOption)) {
                 for (String topic : topics) {
-                    KafkaConsumerThread kafkaConsumerThread =
-                            new KafkaConsumerThread(sourceEventListener, new String[]{topic}, partitions, props,
-                                    topicOffsetMap);
+                    KafkaConsumerThread kafkaConsumerThread = newConsumerThread(sourceEventListener,
+                            new String[]{topic}, partitions);
                     kafkaConsumerThreadList.add(kafkaConsumerThread);
+                    startRecordProcessor(kafkaConsumerThread);
                     executorService.submit(kafkaConsumerThread);
                     log.info("Kafka Consumer thread starting to listen on topic: " + topic +
                             " with partition/s: " + Arrays.toString(partitions));
@@ -90,29 +132,85 @@ public class ConsumerKafkaGroup {
             } else if (KafkaSource.PARTITION_WISE.equals(threadingOption)) {
                 for (String topic : topics) {
                     for (String partition : partitions) {
-                        KafkaConsumerThread kafkaConsumerThread =
-                                new KafkaConsumerThread(sourceEventListener, new String[]{topic},
-                                        new String[]{partition}, props, topicOffsetMap);
+                        KafkaConsumerThread kafkaConsumerThread = newConsumerThread(sourceEventListener,
+                                new String[]{topic}, new String[]{partition});
                         kafkaConsumerThreadList.add(kafkaConsumerThread);
+                        startRecordProcessor(kafkaConsumerThread);
                         executorService.submit(kafkaConsumerThread);
                         log.info("Kafka Consumer thread starting to listen on topic: " + topic +
                                 " with partition: " + partition);
                     }
                 }
+            } else if (KafkaSource.ELASTIC.equals(threadingOption)) {
+                for (int i = 0; i < consumerOptions.getMinConsumers(); i++) {
+                    addConsumer(sourceEventListener);
+                }
+                ConsumerScaler consumerScaler = new ConsumerScaler(consumerOptions.getMinConsumers(),
+                        consumerOptions.getMaxConsumers(), consumerOptions.getScalingLagThreshold());
+                scalingExecutorService = Executors.newSingleThreadScheduledExecutor(new KafkaThreadFactory(
+                        "KafkaConsumerScaler-" + String.join(",", topics), true));
+                scalingExecutorService.scheduleWithFixedDelay(() -> scale(sourceEventListener, consumerScaler),
+                        consumerOptions.getScalingInterval(), consumerOptions.getScalingInterval(),
+                        TimeUnit.MILLISECONDS);
+                log.info("Kafka Consumer group starting " + consumerOptions.getMinConsumers() + " elastic "
+                        + "consumer thread/s to listen on topic/s: " + Arrays.toString(topics));
             }
         } catch (Throwable t) {
             log.error("Error while creating KafkaConsumerThread for topic/s: " + Arrays.toString(topics), t);
         }
     }
 
-    public Map<String, Map<Integer, Long>> getTopicOffsetMap() {
-        Map<String, Map<Integer, Long>> topicOffsetMap = new HashMap<>();
-        for (KafkaConsumerThread kafkaConsumerThread : kafkaConsumerThreadList) {
-            Map<String, Map<Integer, Long>> topicOffsetMapTemp = kafkaConsumerThread.getTopicOffsetMap();
-            for (Map.Entry<String, Map<Integer, Long>> entry : topicOffsetMapTemp.entrySet()) {
-                topicOffsetMap.put(entry.getKey(), entry.getValue());
+    /**
+     * Adds a consumer subscribing to all topics of the group, which Kafka assigns a share of the partitions.
+     */
+    private void addConsumer(SourceEventListener sourceEventListener) {
+        KafkaConsumerThread kafkaConsumerThread = newConsumerThread(sourceEventListener, topics, null);
+        if (paused) {
+            kafkaConsumerThread.pause();
+        }
+        kafkaConsumerThreadList.add(kafkaConsumerThread);
+        startRecordProcessor(kafkaConsumerThread);
+        executorService.submit(kafkaConsumerThread);
+    }
+
+    private KafkaConsumerThread newConsumerThread(SourceEventListener sourceEventListener, String topics[],
+                                                  String partitions[]) {
+        return new KafkaConsumerThread(sourceEventListener, topics, partitions, consumerFactory.apply(props),
+                topicOffsetTable, consumerOptions, sourceMetrics);
+    }
+
+    private synchronized void scale(SourceEventListener sourceEventListener, ConsumerScaler consumerScaler) {
+        try {
+            if (executorService.isShutdown()) {
+                return;
             }
+            int consumers = kafkaConsumerThreadList.size();
+            long lag = sourceMetrics.getMaxRecordsLag();
+            int change = consumerScaler.evaluate(consumers, lag, sourceMetrics.getPartitionCount());
+            if (change > 0) {
+                addConsumer(sourceEventListener);
+                log.info("Added a Kafka consumer for topic/s " + Arrays.toString(topics) + " as the lag is " + lag
+                        + " records, " + (consumers + 1) + " consumers are running.");
+            } else if (change < 0) {
+                // The consumer commits its offsets when it stops, and leaving the group rebalances its partitions
+                kafkaConsumerThreadList.remove(consumers - 1).shutdownConsumer();
+                log.info("Removed a Kafka consumer for topic/s " + Arrays.toString(topics) + " as the lag is " + lag
+                        + " records, " + (consumers - 1) + " consumers are running.");
+            }
+        } catch (Throwable t) {
+            // A failure must not cancel the scheduled task, which would stop scaling the consumers
+            log.error("Error while scaling the Kafka consumers for topic/s: " + Arrays.toString(topics), t);
         }
-        return topicOffsetMap;
+    }
+
+    private void startRecordProcessor(KafkaConsumerThread kafkaConsumerThread) {
+        RecordProcessor recordProcessor = kafkaConsumerThread.getRecordProcessor();
+        if (null != recordProcessor) {
+            recordProcessor.start(executorService);
+        }
+    }
+
+    public Map<String, Map<Integer, Long>> getTopicOffsetMap() {
+        return topicOffsetTable.snapshot();
     }
 }
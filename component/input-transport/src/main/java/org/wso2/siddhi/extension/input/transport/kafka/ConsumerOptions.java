@@ -0,0 +1,202 @@
+/*
+ * Copyright (c) 2017, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ * WSO2 Inc. licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.wso2.siddhi.extension.input.transport.kafka;
+
+/**
+ * Holds the processing options of the Kafka source which are shared by all consumer threads of a source.
+ */
+class ConsumerOptions {
+    private boolean batchDelivery;
+    private int batchMaxSize;
+    private long minPollTimeout;
+    private long maxPollTimeout;
+    private int pipelineBufferSize;
+    private int workerCount;
+    private int workerBufferSize;
+    private boolean keyedSharding;
+    private boolean daemonThreads;
+    private int commitBatchSize;
+    private long commitInterval;
+    private RecordFraming recordFraming = RecordFraming.NONE;
+    private boolean commitOnSnapshot;
+    private int minConsumers;
+    private int maxConsumers;
+    private long scalingLagThreshold;
+    private long scalingInterval;
+
+    boolean isBatchDelivery() {
+        return batchDelivery;
+    }
+
+    void setBatchDelivery(boolean batchDelivery) {
+        this.batchDelivery = batchDelivery;
+    }
+
+    int getBatchMaxSize() {
+        return batchMaxSize;
+    }
+
+    void setBatchMaxSize(int batchMaxSize) {
+        this.batchMaxSize = batchMaxSize;
+    }
+
+    long getMinPollTimeout() {
+        return minPollTimeout;
+    }
+
+    void setMinPollTimeout(long minPollTimeout) {
+        this.minPollTimeout = minPollTimeout;
+    }
+
+    long getMaxPollTimeout() {
+        return maxPollTimeout;
+    }
+
+    void setMaxPollTimeout(long maxPollTimeout) {
+        this.maxPollTimeout = maxPollTimeout;
+    }
+
+    /**
+     * @return size of the buffer between the fetching and the processing thread, 0 when not pipelined
+     */
+    int getPipelineBufferSize() {
+        return pipelineBufferSize;
+    }
+
+    void setPipelineBufferSize(int pipelineBufferSize) {
+        this.pipelineBufferSize = pipelineBufferSize;
+    }
+
+    /**
+     * @return number of worker threads processing the records of a consumer, 0 to process on the consumer thread
+     */
+    int getWorkerCount() {
+        return workerCount;
+    }
+
+    void setWorkerCount(int workerCount) {
+        this.workerCount = workerCount;
+    }
+
+    int getWorkerBufferSize() {
+        return workerBufferSize;
+    }
+
+    void setWorkerBufferSize(int workerBufferSize) {
+        this.workerBufferSize = workerBufferSize;
+    }
+
+    /**
+     * @return true if records are spread over the workers by their key rather than by their partition
+     */
+    boolean isKeyedSharding() {
+        return keyedSharding;
+    }
+
+    void setKeyedSharding(boolean keyedSharding) {
+        this.keyedSharding = keyedSharding;
+    }
+
+    boolean isDaemonThreads() {
+        return daemonThreads;
+    }
+
+    void setDaemonThreads(boolean daemonThreads) {
+        this.daemonThreads = daemonThreads;
+    }
+
+    /**
+     * @return number of consumed records after which offsets are committed
+     */
+    int getCommitBatchSize() {
+        return commitBatchSize;
+    }
+
+    void setCommitBatchSize(int commitBatchSize) {
+        this.commitBatchSize = commitBatchSize;
+    }
+
+    /**
+     * @return time in milliseconds after which consumed offsets are committed
+     */
+    long getCommitInterval() {
+        return commitInterval;
+    }
+
+    void setCommitInterval(long commitInterval) {
+        this.commitInterval = commitInterval;
+    }
+
+    RecordFraming getRecordFraming() {
+        return recordFraming;
+    }
+
+    void setRecordFraming(RecordFraming recordFraming) {
+        this.recordFraming = recordFraming;
+    }
+
+    boolean isCommitOnSnapshot() {
+        return commitOnSnapshot;
+    }
+
+    void setCommitOnSnapshot(boolean commitOnSnapshot) {
+        this.commitOnSnapshot = commitOnSnapshot;
+    }
+
+    /**
+     * @return number of consumers an elastic source starts with and keeps at least
+     */
+    int getMinConsumers() {
+        return minConsumers;
+    }
+
+    void setMinConsumers(int minConsumers) {
+        this.minConsumers = minConsumers;
+    }
+
+    int getMaxConsumers() {
+        return maxConsumers;
+    }
+
+    void setMaxConsumers(int maxConsumers) {
+        this.maxConsumers = maxConsumers;
+    }
+
+    /**
+     * @return lag in records above which an elastic source adds consumers
+     */
+    long getScalingLagThreshold() {
+        return scalingLagThreshold;
+    }
+
+    void setScalingLagThreshold(long scalingLagThreshold) {
+        this.scalingLagThreshold = scalingLagThreshold;
+    }
+
+    /**
+     * @return time in milliseconds between the scaling checks of an elastic source
+     */
+    long getScalingInterval() {
+        return scalingInterval;
+    }
+
+    void setScalingInterval(long scalingInterval) {
+        this.scalingInterval = scalingInterval;
+    }
+}
@@ -0,0 +1,69 @@
+/*
+ * Copyright (c) 2017, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ * WSO2 Inc. licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.wso2.siddhi.extension.input.transport.kafka;
+
+/**
+ * Decides how many consumers an elastic Kafka source runs, based on the lag of the partitions it consumes. A consumer
+ * is added while the lag is above the threshold and not shrinking, and one is removed once the lag stayed below a
+ * tenth of the threshold for a few checks in a row. Consumers share a group, hence Kafka rebalances the partitions
+ * whenever one joins or leaves.
+ */
+class ConsumerScaler {
+    private static final int SCALE_DOWN_CHECKS = 3;
+    private final int minConsumers;
+    private final int maxConsumers;
+    private final long lagThreshold;
+    private long lastLag = -1;
+    private int lowLagChecks;
+
+    ConsumerScaler(int minConsumers, int maxConsumers, long lagThreshold) {
+        this.minConsumers = minConsumers;
+        this.maxConsumers = maxConsumers;
+        this.lagThreshold = lagThreshold;
+    }
+
+    /**
+     * @param consumers  number of consumers running
+     * @param lag        maximum lag of the partitions, -1 if not known
+     * @param partitions number of partitions of the topics consumed
+     * @return 1 to add a consumer, -1 to remove one, 0 to keep the consumers as they are
+     */
+    int evaluate(int consumers, long lag, int partitions) {
+        if (lag < 0) {
+            return 0;
+        }
+        int change = 0;
+        if (lag > lagThreshold) {
+            lowLagChecks = 0;
+            // Consumers beyond the number of partitions would not be assigned any partition
+            if (lag >= lastLag && consumers < maxConsumers && consumers < partitions) {
+                change = 1;
+            }
+        } else if (lag < lagThreshold / 10) {
+            if (++lowLagChecks >= SCALE_DOWN_CHECKS && consumers > minConsumers) {
+                lowLagChecks = 0;
+                change = -1;
+            }
+        } else {
+            lowLagChecks = 0;
+        }
+        lastLag = lag;
+        return change;
+    }
+}
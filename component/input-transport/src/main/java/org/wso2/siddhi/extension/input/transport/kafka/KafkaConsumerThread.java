@@ -18,20 +18,25 @@
 
 package org.wso2.siddhi.extension.input.transport.kafka;
 
-import org.apache.kafka.clients.consumer.CommitFailedException;
-import org.apache.kafka.clients.consumer.ConsumerRecord;
+import org.apache.kafka.clients.consumer.Consumer;
+import org.apache.kafka.clients.consumer.ConsumerRebalanceListener;
 import org.apache.kafka.clients.consumer.ConsumerRecords;
-import org.apache.kafka.clients.consumer.KafkaConsumer;
+import org.apache.kafka.clients.consumer.OffsetAndMetadata;
+import org.apache.kafka.common.KafkaException;
+import org.apache.kafka.common.PartitionInfo;
 import org.apache.kafka.common.TopicPartition;
+import org.apache.kafka.common.errors.WakeupException;
 import org.apache.log4j.Logger;
 import org.wso2.siddhi.core.stream.input.source.SourceEventListener;
 
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Collection;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
-import java.util.Properties;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicReference;
 import java.util.concurrent.locks.Lock;
 import java.util.concurrent.locks.ReentrantLock;
 
@@ -41,27 +46,58 @@ import java.util.concurrent.locks.ReentrantLock;
 public class KafkaConsumerThread implements Runnable {
 
     private static final Logger LOG = Logger.getLogger(KafkaConsumerThread.class);
-    private final KafkaConsumer<byte[], byte[]> consumer;
+    // Time the processing threads get to complete the records of partitions being revoked
+    private static final long REVOKE_PROCESSING_TIMEOUT = 5000;
+    private final Consumer<Object, Object> consumer;
     // KafkaConsumer is not thread safe, hence we need a lock
     private final Lock consumerLock = new ReentrantLock();
-    private SourceEventListener sourceEventListener;
     private String topics[];
-    private Map<String, Map<Integer, Long>> topicOffsetMap = new HashMap<>();
-    private volatile boolean paused;
-    private volatile boolean inactive;
+    private final TopicOffsetTable topicOffsetTable;
+    private volatile ConsumerState state = ConsumerState.RUNNING;
     private List<TopicPartition> partitionsList = new ArrayList<>();
+    private final RecordDispatcher recordDispatcher;
+    // Only set when the records are processed on threads other than the consumer thread
+    private final RecordProcessor recordProcessor;
+    private final AdaptivePollTimeout pollTimeout;
+    private final OffsetCommitScheduler commitScheduler;
+    // When set, offsets are only committed at snapshots, with the offsets stored by the previous snapshot
+    private final boolean commitOnSnapshot;
+    private final AtomicReference<Map<String, Map<Integer, Long>>> snapshotOffsets = new AtomicReference<>();
+    private final KafkaSourceMetrics sourceMetrics;
+    private long lastMetricsSampleTime;
+    // Offsets following the restored ones, sought once their partitions are assigned, guarded by the consumer lock
+    private final Map<TopicPartition, Long> restoredOffsets = new HashMap<>();
+    // Positions of the partitions when they got assigned in subscribe mode, only accessed by the consumer thread.
+    // Processed offsets below them are left over from an earlier assignment and must not be committed
+    private final Map<TopicPartition, Long> assignedPositions = new HashMap<>();
+    private final boolean subscribed;
 
     KafkaConsumerThread(SourceEventListener sourceEventListener, String topics[], String partitions[],
-                        Properties props, Map<String, Map<Integer, Long>> topicOffsetMap) {
-        this.consumer = new KafkaConsumer<>(props);
-        this.sourceEventListener = sourceEventListener;
-        this.topicOffsetMap = topicOffsetMap;
+                        Consumer<Object, Object> consumer, TopicOffsetTable topicOffsetTable,
+                        ConsumerOptions consumerOptions, KafkaSourceMetrics sourceMetrics) {
+        this.consumer = consumer;
+        this.sourceMetrics = sourceMetrics;
+        this.recordDispatcher = new RecordDispatcher(sourceEventListener, topicOffsetTable,
+                consumerOptions.isBatchDelivery(), consumerOptions.getBatchMaxSize(),
+                consumerOptions.getRecordFraming(), sourceMetrics);
+        if (consumerOptions.getWorkerCount() > 0) {
+            this.recordProcessor = new ParallelRecordProcessor(sourceEventListener, topicOffsetTable,
+                    consumerOptions, sourceMetrics);
+        } else if (consumerOptions.getPipelineBufferSize() > 0) {
+            this.recordProcessor = new PipelinedRecordProcessor(recordDispatcher, topics,
+                    consumerOptions.getPipelineBufferSize());
+        } else {
+            this.recordProcessor = null;
+        }
+        this.pollTimeout = new AdaptivePollTimeout(consumerOptions.getMinPollTimeout(),
+                consumerOptions.getMaxPollTimeout());
+        this.commitScheduler = new OffsetCommitScheduler(consumerOptions.getCommitBatchSize(),
+                consumerOptions.getCommitInterval(), sourceMetrics);
+        this.commitOnSnapshot = consumerOptions.isCommitOnSnapshot();
+        this.topicOffsetTable = topicOffsetTable;
         this.topics = topics;
         if (null != partitions) {
             for (String topic : topics) {
-                if (null == topicOffsetMap.get(topic)) {
-                    this.topicOffsetMap.put(topic, new HashMap<>());
-                }
                 for (String partition1 : partitions) {
                     TopicPartition partition = new TopicPartition(topic, Integer.parseInt(partition1));
                     partitionsList.add(partition);
@@ -69,47 +105,71 @@ public class KafkaConsumerThread implements Runnable {
                 LOG.info("Adding partitions " + Arrays.toString(partitions) + " for topic: " + topic);
                 consumer.assign(partitionsList);
             }
-            restore(topicOffsetMap);
+            subscribed = false;
         } else {
-            for (String topic : topics) {
-                if (null == topicOffsetMap.get(topic)) {
-                    this.topicOffsetMap.put(topic, new HashMap<>());
-                }
-            }
-            consumer.subscribe(Arrays.asList(topics));
+            consumer.subscribe(Arrays.asList(topics), new RebalanceListener());
+            subscribed = true;
         }
+        // When subscribing, the offsets of a reconnecting source are sought once Kafka assigns the partitions
+        restore(topicOffsetTable.snapshot());
         LOG.info("Subscribed for topics: " + Arrays.toString(topics));
     }
 
     void pause() {
-        paused = true;
+        if (state == ConsumerState.RUNNING) {
+            state = ConsumerState.PAUSED;
+        }
+        if (null != recordProcessor) {
+            recordProcessor.pause();
+        }
     }
 
     void resume() {
-        restore(topicOffsetMap);
-        paused = false;
+        if (state == ConsumerState.PAUSED) {
+            state = ConsumerState.RUNNING;
+        }
+        if (null != recordProcessor) {
+            recordProcessor.resume();
+        }
     }
 
+    /**
+     * Seeks the partitions assigned to the consumer to the offsets following the given ones. A consumer which has no
+     * partitions yet seeks the partitions of its first assignment, other partitions are sought by their owners.
+     */
     void restore(Map<String, Map<Integer, Long>> topicOffsetMap) {
         final Lock consumerLock = this.consumerLock;
         if (null != topicOffsetMap) {
-            for (String topic : topics) {
-                Map<Integer, Long> offsetMap = topicOffsetMap.get(topic);
-                if (null != offsetMap) {
-                    for (Map.Entry<Integer, Long> entry : offsetMap.entrySet()) {
-                        TopicPartition partition = new TopicPartition(topic, entry.getKey());
-                        if (partitionsList.contains(partition)) {
-                            LOG.info("Seeking partition: " + partition + " for topic: " + topic + " offset: " + (entry
-                                    .getValue() + 1));
-                            try {
-                                consumerLock.lock();
-                                consumer.seek(partition, entry.getValue() + 1);
-                            } finally {
-                                consumerLock.unlock();
-                            }
+            try {
+                consumerLock.lock();
+                restoredOffsets.clear();
+                for (String topic : topics) {
+                    Map<Integer, Long> offsetMap = topicOffsetMap.get(topic);
+                    if (null != offsetMap) {
+                        for (Map.Entry<Integer, Long> entry : offsetMap.entrySet()) {
+                            restoredOffsets.put(new TopicPartition(topic, entry.getKey()), entry.getValue() + 1);
                         }
                     }
                 }
+                Set<TopicPartition> assignment = consumer.assignment();
+                if (!assignment.isEmpty()) {
+                    // Partitions of other consumers are sought by their owners, and a later assignment of them
+                    // continues from the offsets committed by the owners rather than from the restored offsets
+                    seekRestoredOffsets(assignment);
+                    restoredOffsets.clear();
+                }
+            } finally {
+                consumerLock.unlock();
+            }
+        }
+    }
+
+    private void seekRestoredOffsets(Collection<TopicPartition> partitions) {
+        for (TopicPartition partition : partitions) {
+            Long offset = restoredOffsets.remove(partition);
+            if (null != offset) {
+                LOG.info("Seeking partition: " + partition + " offset: " + offset);
+                consumer.seek(partition, offset);
             }
         }
     }
@@ -117,52 +177,344 @@ public class KafkaConsumerThread implements Runnable {
     @Override
     public void run() {
         final Lock consumerLock = this.consumerLock;
-        while (!inactive) {
-            while (!paused) {
+        boolean consumerPaused = false;
+        // Set when the record processor could not accept all records of a poll as its buffers were full
+        boolean pendingRecords = false;
+        try {
+            while (state != ConsumerState.STOPPING) {
+                if (pendingRecords) {
+                    pendingRecords = !recordProcessor.flush();
+                }
+                long currentTime = System.currentTimeMillis();
+                if (commitOnSnapshot) {
+                    Map<String, Map<Integer, Long>> offsets = snapshotOffsets.getAndSet(null);
+                    if (null != offsets) {
+                        commitSnapshotAsync(offsets, currentTime);
+                    }
+                } else if (commitScheduler.isCommitDue(currentTime)) {
+                    commitAsync(currentTime);
+                }
+                if (currentTime - lastMetricsSampleTime >= KafkaSourceMetrics.SAMPLE_INTERVAL) {
+                    sampleMetrics(currentTime);
+                }
+                // Pausing is done through the consumer itself so that polling continues to send heartbeats while
+                // the thread blocks in poll without fetching records
+                boolean pause = state == ConsumerState.PAUSED || pendingRecords;
+                if (pause && !consumerPaused) {
+                    try {
+                        consumerLock.lock();
+                        consumer.pause(assignedPartitions());
+                    } finally {
+                        consumerLock.unlock();
+                    }
+                    consumerPaused = true;
+                } else if (!pause && consumerPaused) {
+                    try {
+                        consumerLock.lock();
+                        consumer.resume(assignedPartitions());
+                    } finally {
+                        consumerLock.unlock();
+                    }
+                    consumerPaused = false;
+                }
                 // The time, in milliseconds, spent waiting in poll if data is not available. If 0, returns
                 // immediately with any records that are available now. Must not be negative
-                ConsumerRecords<byte[], byte[]> records;
+                ConsumerRecords<Object, Object> records;
+                long pollStartTime = System.nanoTime();
                 try {
                     consumerLock.lock();
-                    records = consumer.poll(100);
+                    // A paused consumer polls at the floor, so that resuming and handing pending records over to
+                    // the processor are noticed without waiting for an idle timeout
+                    records = consumer.poll(consumerPaused ? pollTimeout.getMinTimeout() : pollTimeout.getTimeout());
                 } finally {
                     consumerLock.unlock();
                 }
-                for (ConsumerRecord record : records) {
-                    String event = record.value().toString();
-                    if (LOG.isDebugEnabled()) {
-                        LOG.debug("Event received in Kafka Event Adaptor: " + event + ", offSet: " + record.offset()
-                                + ", key: " + record.key() + ", topic: " + record.topic() + ", partition: " + record
-                                .partition());
-                    }
-                    topicOffsetMap.get(record.topic()).put(record.partition(), record.offset());
-                    sourceEventListener.onEvent(event);
-                }
-                try {
-                    consumerLock.lock();
+                long pollEndTime = System.nanoTime();
+                sourceMetrics.polled(records, pollEndTime - pollStartTime);
+                if (consumerPaused) {
                     if (!records.isEmpty()) {
-                        consumer.commitAsync();
+                        // Partitions assigned by a rebalance while paused are not paused yet, hence rewind them
+                        rewind(records);
+                        consumerPaused = false;
                     }
-                } catch (CommitFailedException e) {
-                    LOG.error("Kafka commit failed for topic kafka_result_topic", e);
-                } finally {
-                    consumerLock.unlock();
+                    continue;
+                }
+                if (records.isEmpty()) {
+                    pollTimeout.onPoll(0, 0);
+                    continue;
+                }
+                if (null != recordProcessor) {
+                    pendingRecords = !recordProcessor.offer(records);
+                } else {
+                    recordDispatcher.dispatch(records);
+                }
+                pollTimeout.onPoll(records.count(), System.nanoTime() - pollEndTime);
+                commitScheduler.recordsConsumed(records.count());
+            }
+        } catch (WakeupException e) {
+            // Thrown when the consumer is woken up to stop, rethrow otherwise
+            if (state != ConsumerState.STOPPING) {
+                throw e;
+            }
+        } finally {
+            if (null != recordProcessor) {
+                recordProcessor.shutdown();
+            }
+            if (commitOnSnapshot) {
+                // Offsets processed after the last snapshot are not committed, as a restore replays them
+                Map<String, Map<Integer, Long>> offsets = snapshotOffsets.getAndSet(null);
+                if (null != offsets) {
+                    commitSnapshotSync(offsets);
                 }
+            } else if (commitScheduler.hasUncommittedRecords()) {
+                commitSync();
+            }
+            try {
+                consumerLock.lock();
+                consumer.close();
+            } finally {
+                consumerLock.unlock();
+            }
+            sourceMetrics.removeConsumer(Thread.currentThread().getName());
+        }
+    }
+
+    private void commitAsync(long currentTime) {
+        OffsetCommitScheduler.Commit commit = commitScheduler.commitStarted(currentTime);
+        try {
+            consumerLock.lock();
+            if (null != recordProcessor) {
+                // Positions run ahead of processing, hence only commit the offsets which are processed
+                consumer.commitAsync(ownedOffsets(recordProcessor.committableOffsets()), commit);
+            } else {
+                consumer.commitAsync(commit);
+            }
+        } catch (KafkaException e) {
+            commit.completed(e);
+            LOG.error("Kafka commit failed for topic/s: " + Arrays.toString(topics), e);
+        } finally {
+            consumerLock.unlock();
+        }
+    }
+
+    private void commitSync() {
+        OffsetCommitScheduler.Commit commit = commitScheduler.commitStarted(System.currentTimeMillis());
+        try {
+            consumerLock.lock();
+            try {
+                commitProcessedOffsetsSync();
+            } catch (WakeupException e) {
+                // A wakeup issued to stop the thread after the last poll surfaces here, it is cleared once thrown
+                commitProcessedOffsetsSync();
+            }
+            commit.completed(null);
+        } catch (KafkaException e) {
+            commit.completed(e);
+            LOG.error("Final Kafka commit failed for topic/s: " + Arrays.toString(topics), e);
+        } finally {
+            consumerLock.unlock();
+        }
+    }
+
+    private void commitProcessedOffsetsSync() {
+        if (null != recordProcessor) {
+            consumer.commitSync(ownedOffsets(recordProcessor.committableOffsets()));
+        } else {
+            consumer.commitSync();
+        }
+    }
+
+    /**
+     * Hands the offsets stored by a completed snapshot over to the consumer thread, which commits them with its next
+     * poll.
+     */
+    void commitOnSnapshot(Map<String, Map<Integer, Long>> topicOffsetMap) {
+        snapshotOffsets.set(topicOffsetMap);
+    }
+
+    private void commitSnapshotAsync(Map<String, Map<Integer, Long>> topicOffsetMap, long currentTime) {
+        OffsetCommitScheduler.Commit commit = null;
+        try {
+            consumerLock.lock();
+            Map<TopicPartition, OffsetAndMetadata> offsets = assignedOffsets(topicOffsetMap);
+            if (!offsets.isEmpty()) {
+                commit = commitScheduler.commitStarted(currentTime);
+                consumer.commitAsync(offsets, commit);
+            }
+        } catch (KafkaException e) {
+            if (null != commit) {
+                commit.completed(e);
+            }
+            LOG.error("Kafka commit of the snapshot offsets failed for topic/s: " + Arrays.toString(topics), e);
+        } finally {
+            consumerLock.unlock();
+        }
+    }
+
+    private void commitSnapshotSync(Map<String, Map<Integer, Long>> topicOffsetMap) {
+        OffsetCommitScheduler.Commit commit = null;
+        try {
+            consumerLock.lock();
+            Map<TopicPartition, OffsetAndMetadata> offsets = assignedOffsets(topicOffsetMap);
+            commit = commitScheduler.commitStarted(System.currentTimeMillis());
+            try {
+                consumer.commitSync(offsets);
+            } catch (WakeupException e) {
+                // A wakeup issued to stop the thread after the last poll surfaces here, it is cleared once thrown
+                consumer.commitSync(offsets);
+            }
+            commit.completed(null);
+        } catch (KafkaException e) {
+            if (null != commit) {
+                commit.completed(e);
+            }
+            LOG.error("Final Kafka commit of the snapshot offsets failed for topic/s: " + Arrays.toString(topics),
+                    e);
+        } finally {
+            consumerLock.unlock();
+        }
+    }
+
+    /**
+     * @return the offsets to commit for the snapshot offsets of the partitions assigned to this consumer
+     */
+    private Map<TopicPartition, OffsetAndMetadata> assignedOffsets(Map<String, Map<Integer, Long>> topicOffsetMap) {
+        Map<TopicPartition, OffsetAndMetadata> offsets = new HashMap<>();
+        for (TopicPartition partition : consumer.assignment()) {
+            Map<Integer, Long> offsetMap = topicOffsetMap.get(partition.topic());
+            Long offset = null == offsetMap ? null : offsetMap.get(partition.partition());
+            if (null != offset) {
+                // The snapshot holds the last processed offset, whereas the next offset to consume is committed
+                offsets.put(partition, new OffsetAndMetadata(offset + 1));
+            }
+        }
+        return offsets;
+    }
+
+    /**
+     * Processed offsets come from the offset table shared by all consumers of the source, hence they hold the
+     * partitions of sibling consumers, which must only be committed by their owners, as well as offsets left over
+     * from an earlier assignment of a partition.
+     *
+     * @return the given processed offsets of the partitions owned by this consumer
+     */
+    private Map<TopicPartition, OffsetAndMetadata> ownedOffsets(Map<TopicPartition, OffsetAndMetadata> offsets) {
+        offsets.keySet().retainAll(consumer.assignment());
+        if (subscribed) {
+            offsets.entrySet().removeIf(entry -> {
+                Long assignedPosition = assignedPositions.get(entry.getKey());
+                return null == assignedPosition || entry.getValue().offset() < assignedPosition;
+            });
+        }
+        return offsets;
+    }
+
+    private void sampleMetrics(long currentTime) {
+        long lag;
+        Set<TopicPartition> assignment;
+        int partitionCount;
+        try {
+            consumerLock.lock();
+            lag = KafkaSourceMetrics.recordsLagMax(consumer.metrics());
+            assignment = consumer.assignment();
+            partitionCount = subscribed ? topicPartitionCount() : partitionsList.size();
+        } finally {
+            consumerLock.unlock();
+        }
+        sourceMetrics.sample(Thread.currentThread().getName(), assignment, partitionCount, lag, currentTime);
+        lastMetricsSampleTime = currentTime;
+    }
+
+    /**
+     * @return the number of partitions of the subscribed topics, whether they are assigned to a consumer yet or not
+     */
+    private int topicPartitionCount() {
+        int partitionCount = 0;
+        for (String topic : topics) {
+            // The metadata of subscribed topics is cached by the consumer, hence this does not block
+            List<PartitionInfo> partitionInfos = consumer.partitionsFor(topic);
+            if (null != partitionInfos) {
+                partitionCount += partitionInfos.size();
             }
         }
+        return partitionCount;
+    }
+
+    private TopicPartition[] assignedPartitions() {
+        Set<TopicPartition> assignment = consumer.assignment();
+        return assignment.toArray(new TopicPartition[assignment.size()]);
+    }
+
+    private void rewind(ConsumerRecords<Object, Object> records) {
         try {
             consumerLock.lock();
-            consumer.close();
+            for (TopicPartition partition : records.partitions()) {
+                consumer.seek(partition, records.records(partition).get(0).offset());
+            }
         } finally {
             consumerLock.unlock();
         }
     }
 
     void shutdownConsumer() {
-        inactive = true;
+        state = ConsumerState.STOPPING;
+        // wakeup is the only thread safe method of the consumer, it aborts a poll that is blocking at the moment
+        consumer.wakeup();
+    }
+
+    RecordProcessor getRecordProcessor() {
+        return recordProcessor;
+    }
+
+    TopicOffsetTable getTopicOffsetTable() {
+        return topicOffsetTable;
+    }
+
+    /**
+     * Commits the processed offsets of the partitions before a rebalance revokes them, so that their next owner
+     * continues after the records processed here rather than the last periodic commit, and seeks the partitions
+     * assigned to restored offsets. Kafka calls it on the consumer thread within a poll.
+     */
+    private class RebalanceListener implements ConsumerRebalanceListener {
+
+        @Override
+        public void onPartitionsRevoked(Collection<TopicPartition> partitions) {
+            if (partitions.isEmpty()) {
+                return;
+            }
+            if (null != recordProcessor && !recordProcessor.awaitProcessed(REVOKE_PROCESSING_TIMEOUT)) {
+                LOG.warn("Kafka records of the revoked partitions " + partitions + " are still being processed "
+                        + "after " + REVOKE_PROCESSING_TIMEOUT + " ms, the new owners consume them again.");
+            }
+            if (commitOnSnapshot) {
+                // Records processed after the last snapshot are consumed again, as a restore would replay them
+                Map<String, Map<Integer, Long>> offsets = snapshotOffsets.getAndSet(null);
+                if (null != offsets) {
+                    commitSnapshotSync(offsets);
+                }
+            } else {
+                commitSync();
+            }
+            assignedPositions.keySet().removeAll(partitions);
+        }
+
+        @Override
+        public void onPartitionsAssigned(Collection<TopicPartition> partitions) {
+            seekRestoredOffsets(partitions);
+            // Restored offsets only apply to the assignment following the restore, later assignments continue from
+            // the offsets committed by the previous owners
+            restoredOffsets.clear();
+            for (TopicPartition partition : partitions) {
+                assignedPositions.put(partition, consumer.position(partition));
+            }
+            LOG.info("Kafka partitions assigned for topic/s " + Arrays.toString(topics) + ": " + partitions);
+        }
     }
 
-    Map<String, Map<Integer, Long>> getTopicOffsetMap() {
-        return topicOffsetMap;
+    /**
+     * Lifecycle states of the consumer thread.
+     */
+    enum ConsumerState {
+        RUNNING, PAUSED, STOPPING
     }
 }
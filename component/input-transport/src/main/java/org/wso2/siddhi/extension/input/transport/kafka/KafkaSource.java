@@ -27,11 +27,11 @@ import org.wso2.siddhi.core.stream.input.source.Source;
 import org.wso2.siddhi.core.stream.input.source.SourceEventListener;
 import org.wso2.siddhi.core.util.config.ConfigReader;
 import org.wso2.siddhi.core.util.transport.OptionHolder;
+import org.wso2.siddhi.query.api.exception.ExecutionPlanValidationException;
 
 import java.util.HashMap;
 import java.util.Map;
 import java.util.Properties;
-import java.util.concurrent.ScheduledExecutorService;
 
 /**
  * This processes the Kafka messages.
@@ -47,6 +47,7 @@ public class KafkaSource extends Source {
     protected static final String SINGLE_THREADED = "single.thread";
     protected static final String TOPIC_WISE = "topic.wise";
     protected static final String PARTITION_WISE = "partition.wise";
+    protected static final String ELASTIC = "elastic";
     private static final Logger log = Logger.getLogger(KafkaSource.class);
     private static final  String ADAPTOR_SUBSCRIBER_TOPIC = "topic";
     private static final  String ADAPTOR_SUBSCRIBER_GROUP_ID = "group.id";
@@ -55,15 +56,57 @@ public class KafkaSource extends Source {
     private static final  String ADAPTOR_OPTIONAL_CONFIGURATION_PROPERTIES = "optional.configuration";
     private static final  String TOPIC_OFFSET_MAP = "topic.offset.map";
     private static final  String THREADING_OPTION = "threading.option";
+    private static final  String BATCH_DELIVERY = "batch.delivery";
+    private static final  String BATCH_DELIVERY_MAX_SIZE = "batch.delivery.max.size";
+    private static final  String DESERIALIZER = "deserializer";
+    private static final  String POLL_TIMEOUT_MIN = "poll.timeout.min";
+    private static final  String POLL_TIMEOUT_MAX = "poll.timeout.max";
+    private static final  String PIPELINED_PROCESSING = "pipelined.processing";
+    private static final  String PIPELINE_BUFFER_SIZE = "pipeline.buffer.size";
+    private static final  String WORKER_COUNT = "worker.count";
+    private static final  String WORKER_BUFFER_SIZE = "worker.buffer.size";
+    private static final  String WORKER_SHARDING = "worker.sharding";
+    private static final  String DAEMON_THREADS = "daemon.threads";
+    private static final  String COMMIT_BATCH_SIZE = "commit.batch.size";
+    private static final  String COMMIT_INTERVAL = "commit.interval.ms";
+    private static final  String RECORD_FRAMING = "record.framing";
+    private static final  String COMMIT_ON_SNAPSHOT = "commit.on.snapshot";
+    private static final  String ELASTIC_MIN_CONSUMERS = "elastic.consumers.min";
+    private static final  String ELASTIC_MAX_CONSUMERS = "elastic.consumers.max";
+    private static final  String ELASTIC_LAG_THRESHOLD = "elastic.lag.threshold";
+    private static final  String ELASTIC_CHECK_INTERVAL = "elastic.check.interval.ms";
+    private static final  String ASSIGNMENT_STRATEGY = "assignment.strategy";
+    private static final String DEFAULT_BATCH_DELIVERY_MAX_SIZE = "500";
+    // Polls return as soon as records are available, hence the timeout only bounds the wait on idle topics
+    private static final String DEFAULT_POLL_TIMEOUT_MIN = "10";
+    private static final String DEFAULT_POLL_TIMEOUT_MAX = "1000";
+    private static final String DEFAULT_PIPELINE_BUFFER_SIZE = "16";
+    private static final String DEFAULT_WORKER_BUFFER_SIZE = "1024";
+    private static final String DEFAULT_COMMIT_BATCH_SIZE = "10000";
+    private static final String DEFAULT_COMMIT_INTERVAL = "1000";
+    private static final String DEFAULT_ELASTIC_MIN_CONSUMERS = "1";
+    private static final String DEFAULT_ELASTIC_MAX_CONSUMERS = "8";
+    private static final String DEFAULT_ELASTIC_LAG_THRESHOLD = "10000";
+    private static final String DEFAULT_ELASTIC_CHECK_INTERVAL = "30000";
+    private static final String STRING_DESERIALIZER = "string";
+    private static final String BINARY_DESERIALIZER = "binary";
+    private static final String PARTITION_SHARDING = "partition";
+    private static final String KEY_SHARDING = "key";
+    private static final String RANGE_ASSIGNMENT = "range";
+    private static final String ROUND_ROBIN_ASSIGNMENT = "roundrobin";
     private static final String HEADER_SEPARATOR = ",";
     private static final String ENTRY_SEPARATOR = ":";
     private SourceEventListener sourceEventListener;
-    private ScheduledExecutorService executorService;
     private OptionHolder optionHolder;
     private ConsumerKafkaGroup consumerKafkaGroup;
-    private Map<String, Map<Integer, Long>> topicOffsetMap = new HashMap<>();
+    private TopicOffsetTable topicOffsetTable = new TopicOffsetTable();
+    private KafkaSourceMetrics sourceMetrics = new KafkaSourceMetrics();
+    private String executionPlanName;
+    // Offsets of the last snapshot taken, committed once the following snapshot is taken with commit.on.snapshot
+    private Map<String, Map<Integer, Long>> pendingSnapshotOffsets;
 
-    private static Properties createConsumerConfig(String zkServerList, String groupId, String optionalConfigs) {
+    static Properties createConsumerConfig(String zkServerList, String groupId, String deserializer,
+                                           String optionalConfigs) {
         Properties props = new Properties();
         props.put(ADAPTOR_SUBSCRIBER_ZOOKEEPER_CONNECT_SERVERS, zkServerList);
         if (null != groupId) {
@@ -74,8 +117,18 @@ public class KafkaSource extends Source {
         props.put("session.timeout.ms", "30000");
         props.put("enable.auto.commit", "false");
         props.put("auto.offset.reset", "earliest");
-        props.put("key.deserializer", "org.apache.kafka.common.serialization.StringDeserializer");
-        props.put("value.deserializer", "org.apache.kafka.common.serialization.StringDeserializer");
+        if (BINARY_DESERIALIZER.equalsIgnoreCase(deserializer)) {
+            // Raw bytes are handed over to binary mappers without decoding them into Strings
+            props.put("key.deserializer", "org.apache.kafka.common.serialization.ByteArrayDeserializer");
+            props.put("value.deserializer", "org.apache.kafka.common.serialization.ByteArrayDeserializer");
+        } else if (STRING_DESERIALIZER.equalsIgnoreCase(deserializer)) {
+            props.put("key.deserializer", "org.apache.kafka.common.serialization.StringDeserializer");
+            props.put("value.deserializer", "org.apache.kafka.common.serialization.StringDeserializer");
+        } else {
+            throw new ExecutionPlanValidationException("Unsupported value '" + deserializer + "' for option '"
+                    + DESERIALIZER + "' of Kafka source. Supported values are '" + STRING_DESERIALIZER + "' and '"
+                    + BINARY_DESERIALIZER + "'.");
+        }
 
         if (optionalConfigs != null) {
             String[] optionalProperties = optionalConfigs.split(HEADER_SEPARATOR);
@@ -98,7 +151,7 @@ public class KafkaSource extends Source {
                      ConfigReader configReader, ExecutionPlanContext executionPlanContext) {
         this.sourceEventListener = sourceEventListener;
         this.optionHolder = optionHolder;
-        this.executorService = executionPlanContext.getScheduledExecutorService();
+        this.executionPlanName = executionPlanContext.getName();
         executionPlanContext.getSnapshotService().addSnapshotable("kafka-sink", this);
     }
 
@@ -115,10 +168,95 @@ public class KafkaSource extends Source {
         String topics[] = topicList.split(HEADER_SEPARATOR);
         String optionalConfigs = optionHolder.validateAndGetStaticValue(ADAPTOR_OPTIONAL_CONFIGURATION_PROPERTIES,
                 null);
-        consumerKafkaGroup = new ConsumerKafkaGroup(topics, partitions,
-                KafkaSource.createConsumerConfig(zkServerList, groupID,
-                        optionalConfigs),
-                topicOffsetMap, threadingOption, this.executorService);
+        String deserializer = optionHolder.validateAndGetStaticValue(DESERIALIZER, STRING_DESERIALIZER);
+        ConsumerOptions consumerOptions = new ConsumerOptions();
+        consumerOptions.setBatchDelivery(Boolean.parseBoolean(optionHolder.validateAndGetStaticValue(BATCH_DELIVERY,
+                "false")));
+        consumerOptions.setBatchMaxSize(Integer.parseInt(optionHolder.validateAndGetStaticValue(
+                BATCH_DELIVERY_MAX_SIZE, DEFAULT_BATCH_DELIVERY_MAX_SIZE)));
+        long minPollTimeout = Long.parseLong(optionHolder.validateAndGetStaticValue(POLL_TIMEOUT_MIN,
+                DEFAULT_POLL_TIMEOUT_MIN));
+        consumerOptions.setMinPollTimeout(minPollTimeout);
+        consumerOptions.setMaxPollTimeout(Long.parseLong(optionHolder.validateAndGetStaticValue(POLL_TIMEOUT_MAX,
+                String.valueOf(Math.max(minPollTimeout, Long.parseLong(DEFAULT_POLL_TIMEOUT_MAX))))));
+        if (Boolean.parseBoolean(optionHolder.validateAndGetStaticValue(PIPELINED_PROCESSING, "false"))) {
+            consumerOptions.setPipelineBufferSize(Integer.parseInt(optionHolder.validateAndGetStaticValue(
+                    PIPELINE_BUFFER_SIZE, DEFAULT_PIPELINE_BUFFER_SIZE)));
+        }
+        consumerOptions.setWorkerCount(Integer.parseInt(optionHolder.validateAndGetStaticValue(WORKER_COUNT, "0")));
+        consumerOptions.setWorkerBufferSize(Integer.parseInt(optionHolder.validateAndGetStaticValue(
+                WORKER_BUFFER_SIZE, DEFAULT_WORKER_BUFFER_SIZE)));
+        String workerSharding = optionHolder.validateAndGetStaticValue(WORKER_SHARDING, PARTITION_SHARDING);
+        if (KEY_SHARDING.equalsIgnoreCase(workerSharding)) {
+            consumerOptions.setKeyedSharding(true);
+        } else if (!PARTITION_SHARDING.equalsIgnoreCase(workerSharding)) {
+            throw new ExecutionPlanValidationException("Unsupported value '" + workerSharding + "' for option '"
+                    + WORKER_SHARDING + "' of Kafka source. Supported values are '" + PARTITION_SHARDING + "' and '"
+                    + KEY_SHARDING + "'.");
+        }
+        consumerOptions.setDaemonThreads(Boolean.parseBoolean(optionHolder.validateAndGetStaticValue(DAEMON_THREADS,
+                "false")));
+        consumerOptions.setCommitBatchSize(Integer.parseInt(optionHolder.validateAndGetStaticValue(COMMIT_BATCH_SIZE,
+                DEFAULT_COMMIT_BATCH_SIZE)));
+        consumerOptions.setCommitInterval(Long.parseLong(optionHolder.validateAndGetStaticValue(COMMIT_INTERVAL,
+                DEFAULT_COMMIT_INTERVAL)));
+        consumerOptions.setCommitOnSnapshot(Boolean.parseBoolean(optionHolder.validateAndGetStaticValue(
+                COMMIT_ON_SNAPSHOT, "false")));
+        consumerOptions.setRecordFraming(RecordFraming.fromName(optionHolder.validateAndGetStaticValue(
+                RECORD_FRAMING, "none")));
+        if (consumerOptions.getRecordFraming() == RecordFraming.LENGTH_PREFIXED
+                && !BINARY_DESERIALIZER.equalsIgnoreCase(deserializer)) {
+            throw new ExecutionPlanValidationException("Length prefixed '" + RECORD_FRAMING + "' of Kafka source "
+                    + "requires the '" + BINARY_DESERIALIZER + "' " + DESERIALIZER + ".");
+        }
+        if (ELASTIC.equals(threadingOption)) {
+            if (null != partitions || null == groupID) {
+                throw new ExecutionPlanValidationException("Threading option '" + ELASTIC + "' of Kafka source "
+                        + "requires a '" + ADAPTOR_SUBSCRIBER_GROUP_ID + "' and no '"
+                        + ADAPTOR_SUBSCRIBER_PARTITION_NO_LIST + "', as Kafka assigns the partitions to the "
+                        + "consumers.");
+            }
+            consumerOptions.setMinConsumers(Integer.parseInt(optionHolder.validateAndGetStaticValue(
+                    ELASTIC_MIN_CONSUMERS, DEFAULT_ELASTIC_MIN_CONSUMERS)));
+            consumerOptions.setMaxConsumers(Integer.parseInt(optionHolder.validateAndGetStaticValue(
+                    ELASTIC_MAX_CONSUMERS, String.valueOf(Math.max(consumerOptions.getMinConsumers(),
+                            Integer.parseInt(DEFAULT_ELASTIC_MAX_CONSUMERS))))));
+            if (consumerOptions.getMinConsumers() < 1
+                    || consumerOptions.getMaxConsumers() < consumerOptions.getMinConsumers()) {
+                throw new ExecutionPlanValidationException("Options '" + ELASTIC_MIN_CONSUMERS + "' and '"
+                        + ELASTIC_MAX_CONSUMERS + "' of Kafka source must be at least 1 and not decreasing.");
+            }
+            consumerOptions.setScalingLagThreshold(Long.parseLong(optionHolder.validateAndGetStaticValue(
+                    ELASTIC_LAG_THRESHOLD, DEFAULT_ELASTIC_LAG_THRESHOLD)));
+            consumerOptions.setScalingInterval(Long.parseLong(optionHolder.validateAndGetStaticValue(
+                    ELASTIC_CHECK_INTERVAL, DEFAULT_ELASTIC_CHECK_INTERVAL)));
+        }
+        if (consumerOptions.getWorkerCount() > 0 && consumerOptions.getPipelineBufferSize() > 0) {
+            throw new ExecutionPlanValidationException("Options '" + WORKER_COUNT + "' and '"
+                    + PIPELINED_PROCESSING + "' of Kafka source cannot be used together.");
+        }
+        if (consumerOptions.getWorkerCount() > 0 && consumerOptions.isCommitOnSnapshot()) {
+            // Workers only store their processed offsets when committing, hence a snapshot would not hold them
+            throw new ExecutionPlanValidationException("Options '" + WORKER_COUNT + "' and '"
+                    + COMMIT_ON_SNAPSHOT + "' of Kafka source cannot be used together.");
+        }
+        Properties consumerConfig = KafkaSource.createConsumerConfig(zkServerList, groupID, deserializer,
+                optionalConfigs);
+        String assignmentStrategy = optionHolder.validateAndGetStaticValue(ASSIGNMENT_STRATEGY, null);
+        if (RANGE_ASSIGNMENT.equalsIgnoreCase(assignmentStrategy)) {
+            consumerConfig.put("partition.assignment.strategy", "org.apache.kafka.clients.consumer.RangeAssignor");
+        } else if (ROUND_ROBIN_ASSIGNMENT.equalsIgnoreCase(assignmentStrategy)) {
+            // Spreads the partitions of all topics evenly over the consumers of the group
+            consumerConfig.put("partition.assignment.strategy",
+                    "org.apache.kafka.clients.consumer.RoundRobinAssignor");
+        } else if (null != assignmentStrategy) {
+            throw new ExecutionPlanValidationException("Unsupported value '" + assignmentStrategy + "' for option '"
+                    + ASSIGNMENT_STRATEGY + "' of Kafka source. Supported values are '" + RANGE_ASSIGNMENT + "' and '"
+                    + ROUND_ROBIN_ASSIGNMENT + "'.");
+        }
+        consumerKafkaGroup = new ConsumerKafkaGroup(topics, partitions, consumerConfig, topicOffsetTable,
+                threadingOption, consumerOptions, sourceMetrics);
+        sourceMetrics.register(executionPlanName, topics);
         consumerKafkaGroup.run(sourceEventListener);
     }
 
@@ -126,6 +264,7 @@ public class KafkaSource extends Source {
     public void disconnect() {
         if (consumerKafkaGroup != null) {
             consumerKafkaGroup.shutdown();
+            sourceMetrics.unregister();
             log.debug("Kafka Adapter disconnected for topic/s" +
                     optionHolder.validateAndGetStaticValue(ADAPTOR_SUBSCRIBER_TOPIC));
         }
@@ -158,16 +297,35 @@ public class KafkaSource extends Source {
         }
     }
 
+    /**
+     * With commit.on.snapshot, the offsets of a snapshot are not committed while it is taken, as the snapshot might
+     * still fail, such as at the barrier of a Kafka sink. They are committed once the next snapshot is taken. Siddhi
+     * does not report whether a snapshot completed and got persisted, hence the committed offsets can still be ahead
+     * of the last persisted snapshot. Restoring a snapshot seeks to its own offsets regardless of the committed ones,
+     * the committed offsets only decide where an execution plan started without a restore resumes.
+     */
     @Override
-    public Map<String, Object> currentState() {
+    public synchronized Map<String, Object> currentState() {
         Map<String, Object> currentState = new HashMap<>();
-        currentState.put(TOPIC_OFFSET_MAP, this.topicOffsetMap);
+        Map<String, Map<Integer, Long>> topicOffsetMap = topicOffsetTable.snapshot();
+        currentState.put(TOPIC_OFFSET_MAP, topicOffsetMap);
+        if (null != consumerKafkaGroup && consumerKafkaGroup.isCommitOnSnapshot()) {
+            if (null != pendingSnapshotOffsets) {
+                consumerKafkaGroup.commitOnSnapshot(pendingSnapshotOffsets);
+            }
+            pendingSnapshotOffsets = topicOffsetMap;
+        }
         return currentState;
     }
 
     @Override
-    public void restoreState(Map<String, Object> state) {
-        this.topicOffsetMap = (Map<String, Map<Integer, Long>>) state.get(TOPIC_OFFSET_MAP);
-        consumerKafkaGroup.restore(topicOffsetMap);
+    public synchronized void restoreState(Map<String, Object> state) {
+        // Offsets of snapshots taken after the restored one are replayed, hence they must not be committed
+        pendingSnapshotOffsets = null;
+        Map<String, Map<Integer, Long>> topicOffsetMap = (Map<String, Map<Integer, Long>>) state.get(TOPIC_OFFSET_MAP);
+        topicOffsetTable.restore(topicOffsetMap);
+        if (consumerKafkaGroup != null) {
+            consumerKafkaGroup.restore(topicOffsetMap);
+        }
     }
 }
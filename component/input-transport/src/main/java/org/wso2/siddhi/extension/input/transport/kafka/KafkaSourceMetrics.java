@@ -0,0 +1,280 @@
+/*
+ * Copyright (c) 2017, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ * WSO2 Inc. licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.wso2.siddhi.extension.input.transport.kafka;
+
+import org.apache.kafka.clients.consumer.ConsumerRecord;
+import org.apache.kafka.clients.consumer.ConsumerRecords;
+import org.apache.kafka.common.Metric;
+import org.apache.kafka.common.MetricName;
+import org.apache.kafka.common.TopicPartition;
+import org.apache.log4j.Logger;
+import org.wso2.siddhi.extension.kafka.metrics.LatencyHistogram;
+import org.wso2.siddhi.extension.kafka.metrics.LatencyStats;
+
+import java.lang.management.ManagementFactory;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.ToDoubleFunction;
+import java.util.function.ToLongFunction;
+import javax.management.JMException;
+import javax.management.ObjectName;
+
+/**
+ * Collects the throughput, lag, poll, processing and commit metrics of all consumer threads of a Kafka source and
+ * exposes them as an MXBean. Recording only updates striped counters and histograms, hence it does not allocate
+ * per record. Rates and lag are sampled periodically by the consumer threads for the partitions assigned to them.
+ * Kafka 0.9 consumers only report the maximum lag of their partitions, hence lag is kept per consumer.
+ */
+class KafkaSourceMetrics implements KafkaSourceMetricsMXBean {
+    static final long SAMPLE_INTERVAL = 1000;
+    private static final Logger LOG = Logger.getLogger(KafkaSourceMetrics.class);
+    private static final String DOMAIN = "org.wso2.siddhi.extension.kafka";
+    private static final String FETCH_MANAGER_METRICS = "consumer-fetch-manager-metrics";
+    private static final String RECORDS_LAG_MAX = "records-lag-max";
+    private final Map<TopicPartition, PartitionMetrics> partitionMetrics = new ConcurrentHashMap<>();
+    private final Map<String, Long> consumerMaxLag = new ConcurrentHashMap<>();
+    private final LatencyHistogram pollTime = new LatencyHistogram();
+    private final LatencyHistogram processingTime = new LatencyHistogram();
+    private final LatencyHistogram commitLatency = new LatencyHistogram();
+    private final LongAdder commitFailures = new LongAdder();
+    private volatile int partitionCount;
+    private ObjectName objectName;
+
+    void polled(ConsumerRecords<Object, Object> records, long pollNanos) {
+        pollTime.record(pollNanos);
+        if (records.isEmpty()) {
+            return;
+        }
+        for (TopicPartition partition : records.partitions()) {
+            List<ConsumerRecord<Object, Object>> partitionRecords = records.records(partition);
+            long bytes = 0;
+            for (int i = 0; i < partitionRecords.size(); i++) {
+                bytes += payloadSize(partitionRecords.get(i).value());
+            }
+            getPartitionMetrics(partition).consumed(partitionRecords.size(), bytes);
+        }
+    }
+
+    void processed(long processingNanos) {
+        processingTime.record(processingNanos);
+    }
+
+    void committed(long commitNanos, boolean failed) {
+        commitLatency.record(commitNanos);
+        if (failed) {
+            commitFailures.increment();
+        }
+    }
+
+    /**
+     * Updates the lag of a consumer and the rates of the partitions assigned to it.
+     *
+     * @param consumer       name of the consumer
+     * @param partitions     partitions assigned to the consumer
+     * @param partitionCount number of partitions of the topics consumed
+     * @param consumerLag    maximum lag of the consumer, -1 if not known
+     * @param currentTime    current time in milliseconds
+     */
+    void sample(String consumer, Collection<TopicPartition> partitions, int partitionCount, long consumerLag,
+                long currentTime) {
+        this.partitionCount = partitionCount;
+        consumerMaxLag.put(consumer, consumerLag);
+        for (TopicPartition partition : partitions) {
+            getPartitionMetrics(partition).sample(currentTime);
+        }
+    }
+
+    /**
+     * Drops the lag of a stopped consumer, whose partitions are reported by the consumers they are moved to.
+     */
+    void removeConsumer(String consumer) {
+        consumerMaxLag.remove(consumer);
+    }
+
+    /**
+     * @return the maximum lag in records reported by the consumer metrics, or -1 if it is not known yet
+     */
+    static long recordsLagMax(Map<MetricName, ? extends Metric> consumerMetrics) {
+        for (Map.Entry<MetricName, ? extends Metric> entry : consumerMetrics.entrySet()) {
+            MetricName metricName = entry.getKey();
+            if (RECORDS_LAG_MAX.equals(metricName.name()) && FETCH_MANAGER_METRICS.equals(metricName.group())) {
+                double lag = entry.getValue().value();
+                // The lag is not a finite number until the first fetch completed
+                return Double.isNaN(lag) || Double.isInfinite(lag) ? -1 : (long) lag;
+            }
+        }
+        return -1;
+    }
+
+    private static long payloadSize(Object value) {
+        if (value instanceof byte[]) {
+            return ((byte[]) value).length;
+        } else if (value instanceof String) {
+            // Counting the encoded length would encode every value once more, hence mostly ASCII text is assumed
+            return ((String) value).length();
+        }
+        return 0;
+    }
+
+    /**
+     * @return the maximum lag of all consumers, -1 if not known
+     */
+    long getMaxRecordsLag() {
+        long maxLag = -1;
+        for (long lag : consumerMaxLag.values()) {
+            maxLag = Math.max(maxLag, lag);
+        }
+        return maxLag;
+    }
+
+    /**
+     * @return the number of partitions of the topics consumed, including those that did not deliver any record yet
+     */
+    int getPartitionCount() {
+        return partitionCount;
+    }
+
+    private PartitionMetrics getPartitionMetrics(TopicPartition partition) {
+        PartitionMetrics metrics = partitionMetrics.get(partition);
+        if (null == metrics) {
+            metrics = partitionMetrics.computeIfAbsent(partition, key -> new PartitionMetrics());
+        }
+        return metrics;
+    }
+
+    void register(String executionPlanName, String topics[]) {
+        try {
+            objectName = new ObjectName(DOMAIN + ":type=KafkaSource,executionPlan="
+                    + ObjectName.quote(String.valueOf(executionPlanName))
+                    + ",topics=" + ObjectName.quote(String.join(",", topics)));
+            ManagementFactory.getPlatformMBeanServer().registerMBean(this, objectName);
+        } catch (JMException e) {
+            LOG.warn("Metrics of Kafka source for topic/s " + String.join(",", topics) + " are not exposed through "
+                    + "JMX.", e);
+            objectName = null;
+        }
+    }
+
+    void unregister() {
+        if (null != objectName) {
+            try {
+                ManagementFactory.getPlatformMBeanServer().unregisterMBean(objectName);
+            } catch (JMException e) {
+                LOG.warn("Error while unregistering the metrics MBean " + objectName, e);
+            }
+            objectName = null;
+        }
+    }
+
+    @Override
+    public Map<String, Long> getRecordsConsumed() {
+        return collect(metrics -> metrics.records.sum());
+    }
+
+    @Override
+    public Map<String, Long> getBytesConsumed() {
+        return collect(metrics -> metrics.bytes.sum());
+    }
+
+    @Override
+    public Map<String, Double> getRecordsPerSecond() {
+        return collectRates(metrics -> metrics.recordsPerSecond);
+    }
+
+    @Override
+    public Map<String, Double> getBytesPerSecond() {
+        return collectRates(metrics -> metrics.bytesPerSecond);
+    }
+
+    @Override
+    public Map<String, Long> getConsumerMaxLag() {
+        return new TreeMap<>(consumerMaxLag);
+    }
+
+    @Override
+    public LatencyStats getPollTime() {
+        return pollTime.snapshot();
+    }
+
+    @Override
+    public LatencyStats getProcessingTime() {
+        return processingTime.snapshot();
+    }
+
+    @Override
+    public LatencyStats getCommitLatency() {
+        return commitLatency.snapshot();
+    }
+
+    @Override
+    public long getCommitFailures() {
+        return commitFailures.sum();
+    }
+
+    private Map<String, Long> collect(ToLongFunction<PartitionMetrics> metric) {
+        Map<String, Long> values = new TreeMap<>();
+        partitionMetrics.forEach((partition, metrics) -> values.put(partition.toString(),
+                metric.applyAsLong(metrics)));
+        return values;
+    }
+
+    private Map<String, Double> collectRates(ToDoubleFunction<PartitionMetrics> metric) {
+        Map<String, Double> values = new TreeMap<>();
+        partitionMetrics.forEach((partition, metrics) -> values.put(partition.toString(),
+                metric.applyAsDouble(metrics)));
+        return values;
+    }
+
+    /**
+     * Counters of a single partition. Sampling is synchronized as a rebalance may move the partition from one
+     * consumer to another in between samples.
+     */
+    private static class PartitionMetrics {
+        private final LongAdder records = new LongAdder();
+        private final LongAdder bytes = new LongAdder();
+        private volatile double recordsPerSecond;
+        private volatile double bytesPerSecond;
+        private long lastSampleTime = System.currentTimeMillis();
+        private long lastSampleRecords;
+        private long lastSampleBytes;
+
+        void consumed(int recordCount, long byteCount) {
+            records.add(recordCount);
+            bytes.add(byteCount);
+        }
+
+        synchronized void sample(long currentTime) {
+            long elapsed = currentTime - lastSampleTime;
+            if (elapsed <= 0) {
+                return;
+            }
+            long recordCount = records.sum();
+            long byteCount = bytes.sum();
+            recordsPerSecond = (recordCount - lastSampleRecords) * 1000d / elapsed;
+            bytesPerSecond = (byteCount - lastSampleBytes) * 1000d / elapsed;
+            lastSampleTime = currentTime;
+            lastSampleRecords = recordCount;
+            lastSampleBytes = byteCount;
+        }
+    }
+}
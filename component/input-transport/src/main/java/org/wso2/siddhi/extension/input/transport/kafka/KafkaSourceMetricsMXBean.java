@@ -0,0 +1,57 @@
+/*
+ * Copyright (c) 2017, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ * WSO2 Inc. licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.wso2.siddhi.extension.input.transport.kafka;
+
+import org.wso2.siddhi.extension.kafka.metrics.LatencyStats;
+
+import java.util.Map;
+
+/**
+ * Metrics of a Kafka source exposed through JMX. Per partition metrics are keyed by 'topic-partition'.
+ */
+public interface KafkaSourceMetricsMXBean {
+
+    Map<String, Long> getRecordsConsumed();
+
+    Map<String, Long> getBytesConsumed();
+
+    Map<String, Double> getRecordsPerSecond();
+
+    Map<String, Double> getBytesPerSecond();
+
+    /**
+     * @return maximum lag of the partitions of each consumer, keyed by the name of the consumer thread, or -1 when
+     * not known yet
+     */
+    Map<String, Long> getConsumerMaxLag();
+
+    /**
+     * @return time spent in polls, including the time waiting for records
+     */
+    LatencyStats getPollTime();
+
+    /**
+     * @return time spent handing the records of a poll, or of a worker batch, over to siddhi
+     */
+    LatencyStats getProcessingTime();
+
+    LatencyStats getCommitLatency();
+
+    long getCommitFailures();
+}
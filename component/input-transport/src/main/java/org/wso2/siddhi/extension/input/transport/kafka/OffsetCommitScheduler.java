@@ -0,0 +1,116 @@
+/*
+ * Copyright (c) 2017, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ * WSO2 Inc. licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.wso2.siddhi.extension.input.transport.kafka;
+
+import org.apache.kafka.clients.consumer.OffsetAndMetadata;
+import org.apache.kafka.clients.consumer.OffsetCommitCallback;
+import org.apache.kafka.common.TopicPartition;
+import org.apache.log4j.Logger;
+
+import java.util.Map;
+
+/**
+ * Decides when a consumer thread commits its offsets, which is once the configured number of records has been
+ * consumed or the configured interval has elapsed since the last commit, whichever comes first. Records only count as
+ * committed once their commit succeeds, and no further commit is started while one is in progress. A failed commit is
+ * retried after the interval, so that a failing broker is not asked for a commit with every poll.
+ */
+class OffsetCommitScheduler {
+    private static final Logger LOG = Logger.getLogger(OffsetCommitScheduler.class);
+    private final int commitBatchSize;
+    private final long commitInterval;
+    private final KafkaSourceMetrics sourceMetrics;
+    // Callbacks of asynchronous commits are run on the consumer thread too, hence no synchronization is needed
+    private int uncommittedRecords;
+    private long lastCommitTime;
+    private int pendingCommits;
+    private boolean lastCommitFailed;
+
+    OffsetCommitScheduler(int commitBatchSize, long commitInterval, KafkaSourceMetrics sourceMetrics) {
+        this.commitBatchSize = commitBatchSize;
+        this.commitInterval = commitInterval;
+        this.sourceMetrics = sourceMetrics;
+        this.lastCommitTime = System.currentTimeMillis();
+    }
+
+    void recordsConsumed(int recordCount) {
+        uncommittedRecords += recordCount;
+    }
+
+    boolean hasUncommittedRecords() {
+        return uncommittedRecords > 0;
+    }
+
+    boolean isCommitDue(long currentTime) {
+        if (pendingCommits > 0 || uncommittedRecords == 0) {
+            return false;
+        }
+        return (!lastCommitFailed && uncommittedRecords >= commitBatchSize)
+                || currentTime - lastCommitTime >= commitInterval;
+    }
+
+    /**
+     * Starts a commit of the records consumed so far.
+     *
+     * @return the commit, which is given to the consumer as the callback of an asynchronous commit, or completed by
+     * the caller of a synchronous one
+     */
+    Commit commitStarted(long currentTime) {
+        pendingCommits++;
+        lastCommitTime = currentTime;
+        return new Commit(uncommittedRecords, System.nanoTime());
+    }
+
+    /**
+     * A commit in progress, which keeps its own start time and record count as asynchronous commits may overlap with
+     * a synchronous one.
+     */
+    final class Commit implements OffsetCommitCallback {
+        private final int recordCount;
+        private final long startTime;
+
+        private Commit(int recordCount, long startTime) {
+            this.recordCount = recordCount;
+            this.startTime = startTime;
+        }
+
+        /**
+         * @param exception the failure of the commit, null if it succeeded
+         */
+        void completed(Exception exception) {
+            pendingCommits--;
+            sourceMetrics.committed(System.nanoTime() - startTime, null != exception);
+            lastCommitFailed = null != exception;
+            if (null == exception) {
+                // Records consumed while the commit was in progress are left for the next commit
+                uncommittedRecords = Math.max(0, uncommittedRecords - recordCount);
+            }
+        }
+
+        @Override
+        public void onComplete(Map<TopicPartition, OffsetAndMetadata> offsets, Exception exception) {
+            completed(exception);
+            if (null != exception) {
+                LOG.error("Kafka commit failed for offsets " + offsets, exception);
+            } else if (LOG.isDebugEnabled()) {
+                LOG.debug("Kafka offsets committed: " + offsets);
+            }
+        }
+    }
+}
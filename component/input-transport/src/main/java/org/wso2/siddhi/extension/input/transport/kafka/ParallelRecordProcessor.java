@@ -0,0 +1,323 @@
+/*
+ * Copyright (c) 2017, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ * WSO2 Inc. licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.wso2.siddhi.extension.input.transport.kafka;
+
+import org.apache.kafka.clients.consumer.ConsumerRecord;
+import org.apache.kafka.clients.consumer.ConsumerRecords;
+import org.apache.kafka.clients.consumer.OffsetAndMetadata;
+import org.apache.kafka.common.TopicPartition;
+import org.apache.log4j.Logger;
+import org.wso2.siddhi.core.stream.input.source.SourceEventListener;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Fans the records polled by a single {@link KafkaConsumerThread} out to a pool of worker threads. All records of a
+ * partition, or of a key when keyed sharding is enabled, are processed by the same worker, which keeps their
+ * ordering, and offsets are only committed up to the lowest offset still being processed.
+ */
+class ParallelRecordProcessor implements RecordProcessor {
+    private static final Logger LOG = Logger.getLogger(ParallelRecordProcessor.class);
+    private final Worker workers[];
+    private final Map<TopicPartition, PartitionOffsetTracker> offsetTrackers = new ConcurrentHashMap<>();
+    private final TopicOffsetTable topicOffsetTable;
+    private final boolean keyedSharding;
+    // Maximum number of records of a partition in flight at a time
+    private final int trackerCapacity;
+    // Records of a poll that could not be handed over as a worker buffer was full, only accessed by the consumer
+    private final List<ConsumerRecord<Object, Object>> pendingRecords = new ArrayList<>();
+    // Consumer thread waiting for the in-flight records to be processed, only set while it waits
+    private volatile Thread awaitingThread;
+
+    ParallelRecordProcessor(SourceEventListener sourceEventListener, TopicOffsetTable topicOffsetTable,
+                            ConsumerOptions consumerOptions, KafkaSourceMetrics sourceMetrics) {
+        this.topicOffsetTable = topicOffsetTable;
+        this.keyedSharding = consumerOptions.isKeyedSharding();
+        this.workers = new Worker[consumerOptions.getWorkerCount()];
+        for (int i = 0; i < workers.length; i++) {
+            workers[i] = new Worker(this, sourceEventListener, consumerOptions.getWorkerBufferSize(),
+                    consumerOptions.isBatchDelivery() ? consumerOptions.getBatchMaxSize() : 1,
+                    consumerOptions.isBatchDelivery(), consumerOptions.getBatchMaxSize(),
+                    consumerOptions.getRecordFraming(), sourceMetrics);
+        }
+        // A worker holds the records in its buffer and the batch it processes. Records of a partition are spread
+        // over all workers with keyed sharding
+        int workerCapacity = workers[0].capacity();
+        this.trackerCapacity = keyedSharding ? workers.length * workerCapacity : workerCapacity;
+    }
+
+    @Override
+    public void start(ExecutorService executorService) {
+        for (Worker worker : workers) {
+            executorService.submit(worker);
+        }
+    }
+
+    @Override
+    public boolean offer(ConsumerRecords<Object, Object> records) {
+        for (TopicPartition partition : records.partitions()) {
+            pendingRecords.addAll(records.records(partition));
+        }
+        return flush();
+    }
+
+    @Override
+    public boolean flush() {
+        int dispatched = 0;
+        PartitionOffsetTracker offsetTracker = null;
+        TopicPartition partition = null;
+        for (ConsumerRecord<Object, Object> record : pendingRecords) {
+            if (null == partition || record.partition() != partition.partition()
+                    || !record.topic().equals(partition.topic())) {
+                partition = new TopicPartition(record.topic(), record.partition());
+                offsetTracker = offsetTrackers.computeIfAbsent(partition, key -> new PartitionOffsetTracker(
+                        key.topic(), key.partition(), topicOffsetTable, trackerCapacity));
+            }
+            long sequence = offsetTracker.dispatching(record.offset());
+            if (PartitionOffsetTracker.NO_SEQUENCE == sequence
+                    || !workers[shard(record)].offer(record, offsetTracker, sequence)) {
+                break;
+            }
+            offsetTracker.dispatched(sequence);
+            dispatched++;
+        }
+        if (dispatched == pendingRecords.size()) {
+            pendingRecords.clear();
+        } else {
+            pendingRecords.subList(0, dispatched).clear();
+        }
+        for (Worker worker : workers) {
+            worker.signal();
+        }
+        return pendingRecords.isEmpty();
+    }
+
+    private int shard(ConsumerRecord<Object, Object> record) {
+        int hash;
+        Object key = record.key();
+        if (keyedSharding && null != key) {
+            // Keys are byte arrays when the binary deserializer is used
+            hash = (key instanceof byte[]) ? Arrays.hashCode((byte[]) key) : key.hashCode();
+        } else {
+            hash = 31 * record.topic().hashCode() + record.partition();
+        }
+        return (hash & 0x7fffffff) % workers.length;
+    }
+
+    @Override
+    public Map<TopicPartition, OffsetAndMetadata> committableOffsets() {
+        Map<TopicPartition, OffsetAndMetadata> offsets = new HashMap<>();
+        for (Map.Entry<TopicPartition, PartitionOffsetTracker> entry : offsetTrackers.entrySet()) {
+            long committableOffset = entry.getValue().committableOffset();
+            if (committableOffset >= 0) {
+                offsets.put(entry.getKey(), new OffsetAndMetadata(committableOffset));
+            }
+        }
+        return offsets;
+    }
+
+    @Override
+    public boolean awaitProcessed(long timeout) {
+        long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(timeout);
+        awaitingThread = Thread.currentThread();
+        try {
+            // Workers unpark this thread for each processed batch, which is re-checked after setting the thread
+            while (!flush() || !offsetTrackers.values().stream().allMatch(PartitionOffsetTracker::isIdle)) {
+                long remaining = deadline - System.nanoTime();
+                if (remaining <= 0) {
+                    return false;
+                }
+                LockSupport.parkNanos(this, remaining);
+            }
+            return true;
+        } finally {
+            awaitingThread = null;
+        }
+    }
+
+    @Override
+    public void pause() {
+        for (Worker worker : workers) {
+            worker.paused = true;
+        }
+    }
+
+    @Override
+    public void resume() {
+        for (Worker worker : workers) {
+            worker.paused = false;
+            LockSupport.unpark(worker.workerThread);
+        }
+    }
+
+    @Override
+    public void shutdown() {
+        for (Worker worker : workers) {
+            worker.inactive = true;
+            LockSupport.unpark(worker.workerThread);
+        }
+    }
+
+    /**
+     * Worker processing the records of the partitions assigned to it in the order they were polled. An idle worker
+     * announces that it waits through a volatile flag before re-checking for records and parking, so that the consumer
+     * thread only unparks it when it actually waits.
+     */
+    private static class Worker implements Runnable {
+        private final ParallelRecordProcessor recordProcessor;
+        private final SourceEventListener sourceEventListener;
+        private final SpscRingBuffer<ConsumerRecord<Object, Object>> ringBuffer;
+        private final SpscRingBuffer<PartitionOffsetTracker> trackerBuffer;
+        private final boolean batchDelivery;
+        private final int batchMaxSize;
+        private final RecordFraming recordFraming;
+        private final KafkaSourceMetrics sourceMetrics;
+        private final Object events[];
+        private final ConsumerRecord records[];
+        private final PartitionOffsetTracker offsetTrackers[];
+        private final long trackerSequences[];
+        // Sequences of the records in the buffer, in the slots of their trackers in the tracker buffer
+        private final long sequences[];
+        private final int sequenceMask;
+        // Records handed over by the consumer thread, published to the worker on signalling it
+        private long offeredCount;
+        private volatile long signalledCount;
+        // Records taken from the buffer, only accessed by the worker thread
+        private long takenCount;
+        private volatile Thread workerThread;
+        private volatile boolean waiting;
+        private volatile boolean paused;
+        private volatile boolean inactive;
+
+        Worker(ParallelRecordProcessor recordProcessor, SourceEventListener sourceEventListener, int bufferSize,
+               int maxRecords, boolean batchDelivery, int batchMaxSize, RecordFraming recordFraming,
+               KafkaSourceMetrics sourceMetrics) {
+            this.recordProcessor = recordProcessor;
+            this.sourceEventListener = sourceEventListener;
+            this.ringBuffer = new SpscRingBuffer<>(bufferSize);
+            this.trackerBuffer = new SpscRingBuffer<>(bufferSize);
+            this.batchDelivery = batchDelivery;
+            this.batchMaxSize = batchMaxSize;
+            this.recordFraming = recordFraming;
+            this.sourceMetrics = sourceMetrics;
+            this.events = new Object[maxRecords];
+            this.records = new ConsumerRecord[maxRecords];
+            this.offsetTrackers = new PartitionOffsetTracker[maxRecords];
+            this.trackerSequences = new long[maxRecords];
+            this.sequences = new long[trackerBuffer.capacity()];
+            this.sequenceMask = sequences.length - 1;
+        }
+
+        /**
+         * @return maximum number of records handed over to this worker and not yet completed
+         */
+        int capacity() {
+            return ringBuffer.capacity() + records.length;
+        }
+
+        boolean offer(ConsumerRecord<Object, Object> record, PartitionOffsetTracker offsetTracker, long sequence) {
+            // The tracker is published first so that it is visible once the worker sees the record. The worker takes
+            // the record before the tracker, hence the record buffer has room whenever the tracker buffer had. The
+            // sequence slot is only reused once the tracker buffer has room, which the worker makes after reading it
+            if (!trackerBuffer.offer(offsetTracker)) {
+                return false;
+            }
+            sequences[(int) offeredCount & sequenceMask] = sequence;
+            ringBuffer.offer(record);
+            offeredCount++;
+            return true;
+        }
+
+        void signal() {
+            if (signalledCount == offeredCount) {
+                return;
+            }
+            // The count is written before reading the flag, hence a worker announcing its wait afterwards sees the
+            // records handed over when it re-checks the count
+            signalledCount = offeredCount;
+            if (waiting) {
+                LockSupport.unpark(workerThread);
+            }
+        }
+
+        @Override
+        public void run() {
+            workerThread = Thread.currentThread();
+            while (!inactive) {
+                if (paused || ringBuffer.isEmpty()) {
+                    waiting = true;
+                    // Re-checked after announcing the wait, as the consumer thread only unparks a waiting worker.
+                    // Resuming and shutting down always unpark it
+                    if (!inactive && (paused || signalledCount <= takenCount)) {
+                        LockSupport.park(this);
+                    }
+                    waiting = false;
+                    continue;
+                }
+                int count = 0;
+                ConsumerRecord<Object, Object> record;
+                while (count < records.length && null != (record = ringBuffer.poll())) {
+                    records[count] = record;
+                    trackerSequences[count] = sequences[(int) (takenCount + count) & sequenceMask];
+                    offsetTrackers[count] = trackerBuffer.poll();
+                    events[count] = record.value();
+                    count++;
+                }
+                takenCount += count;
+                long startTime = System.nanoTime();
+                try {
+                    if (recordFraming != RecordFraming.NONE) {
+                        for (int i = 0; i < count; i++) {
+                            recordFraming.deliver(events[i], sourceEventListener, batchDelivery, batchMaxSize);
+                        }
+                    } else if (batchDelivery) {
+                        sourceEventListener.onEvent(Arrays.copyOf(events, count));
+                    } else {
+                        sourceEventListener.onEvent(events[0]);
+                    }
+                } catch (Throwable t) {
+                    LOG.error("Error while processing Kafka records in worker " + Thread.currentThread().getName(),
+                            t);
+                }
+                sourceMetrics.processed(System.nanoTime() - startTime);
+                for (int i = 0; i < count; i++) {
+                    offsetTrackers[i].completed(trackerSequences[i]);
+                    records[i] = null;
+                    offsetTrackers[i] = null;
+                    events[i] = null;
+                }
+                Thread waitingThread = recordProcessor.awaitingThread;
+                if (null != waitingThread) {
+                    LockSupport.unpark(waitingThread);
+                }
+            }
+            // Records left in the buffer are not committed, hence they are consumed again after a restart
+            ringBuffer.clear();
+            trackerBuffer.clear();
+        }
+    }
+}
@@ -0,0 +1,141 @@
+/*
+ * Copyright (c) 2017, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ * WSO2 Inc. licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.wso2.siddhi.extension.input.transport.kafka;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Tracks the offsets of a partition which are handed over to worker threads and not yet processed, so that only the
+ * offsets below the lowest in-flight offset get committed. Offsets are dispatched in increasing order by the consumer
+ * thread, while workers complete them in any order.
+ * <p>
+ * Each dispatched record gets the next sequence number and its offset is kept in a primitive ring slot of that
+ * sequence, hence tracking neither boxes nor allocates per record. Completing workers advance the low watermark, the
+ * sequence of the lowest record not yet completed, and publish the offset before it to the offset table, so that
+ * snapshots see the processed offsets without waiting for a commit.
+ */
+class PartitionOffsetTracker {
+    static final long NO_SEQUENCE = -1;
+    private final String topic;
+    private final int partition;
+    private final TopicOffsetTable topicOffsetTable;
+    private final int mask;
+    // Offset of each in-flight record, in the slot of its sequence
+    private final AtomicLongArray offsets;
+    // Sequence of the record completed in each slot, which tells the completed records from the reused slots
+    private final AtomicLongArray completions;
+    // Sequence of the lowest record which is not completed yet
+    private final AtomicLong lowSequence = new AtomicLong();
+    // Sequence of the next record to dispatch, only written by the consumer thread
+    private volatile long nextSequence;
+
+    /**
+     * @param capacity maximum number of records of the partition in flight at a time
+     */
+    PartitionOffsetTracker(String topic, int partition, TopicOffsetTable topicOffsetTable, int capacity) {
+        this.topic = topic;
+        this.partition = partition;
+        this.topicOffsetTable = topicOffsetTable;
+        // One slot more is kept, so that the slot below the low watermark keeps the last completed offset
+        int size = Integer.highestOneBit(capacity + 1);
+        if (size < capacity + 1) {
+            size <<= 1;
+        }
+        this.mask = size - 1;
+        this.offsets = new AtomicLongArray(size);
+        this.completions = new AtomicLongArray(size);
+        for (int i = 0; i < size; i++) {
+            completions.set(i, NO_SEQUENCE);
+        }
+    }
+
+    /**
+     * Records the offset before handing the record over, so that a fast worker cannot complete it beforehand. The
+     * record only counts as in flight once {@link #dispatched(long)}, a record the worker did not accept is
+     * dispatched again with the same sequence.
+     *
+     * @return sequence of the record, or {@link #NO_SEQUENCE} if too many records are in flight
+     */
+    long dispatching(long offset) {
+        long sequence = nextSequence;
+        if (sequence - lowSequence.get() >= mask) {
+            return NO_SEQUENCE;
+        }
+        offsets.lazySet(slot(sequence), offset);
+        return sequence;
+    }
+
+    void dispatched(long sequence) {
+        nextSequence = sequence + 1;
+        // The worker might have completed the record before it counted as dispatched
+        advance();
+    }
+
+    void completed(long sequence) {
+        completions.set(slot(sequence), sequence);
+        advance();
+    }
+
+    boolean isIdle() {
+        return lowSequence.get() == nextSequence;
+    }
+
+    /**
+     * @return offset of the next record to be consumed when restarting, or -1 if nothing has been dispatched
+     */
+    long committableOffset() {
+        while (true) {
+            long low = lowSequence.get();
+            long offset;
+            if (low < nextSequence) {
+                offset = offsets.get(slot(low));
+            } else if (low > 0) {
+                offset = offsets.get(slot(low - 1)) + 1;
+            } else {
+                return -1;
+            }
+            // A slot is only reused once the low watermark moved past it, in which case it is read again
+            if (lowSequence.get() == low) {
+                return offset;
+            }
+        }
+    }
+
+    private void advance() {
+        long low = lowSequence.get();
+        boolean advanced = false;
+        while (low < nextSequence && completions.get(slot(low)) == low) {
+            if (lowSequence.compareAndSet(low, low + 1)) {
+                low++;
+                advanced = true;
+            } else {
+                low = lowSequence.get();
+            }
+        }
+        if (advanced) {
+            // The offset table holds the last processed offset, which is what gets persisted in snapshots
+            topicOffsetTable.advance(topic, partition, committableOffset() - 1);
+        }
+    }
+
+    private int slot(long sequence) {
+        return (int) sequence & mask;
+    }
+}
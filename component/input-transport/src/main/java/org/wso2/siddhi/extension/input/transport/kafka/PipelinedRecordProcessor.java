@@ -0,0 +1,165 @@
+/*
+ * Copyright (c) 2017, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ * WSO2 Inc. licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.wso2.siddhi.extension.input.transport.kafka;
+
+import org.apache.kafka.clients.consumer.ConsumerRecords;
+import org.apache.kafka.clients.consumer.OffsetAndMetadata;
+import org.apache.kafka.common.TopicPartition;
+import org.apache.log4j.Logger;
+
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Processes the polls handed over by a {@link KafkaConsumerThread} on a separate thread, so that fetching from Kafka
+ * overlaps with processing the events in siddhi. Polls are exchanged through a bounded ring buffer and the fetching
+ * thread pauses its partitions when the buffer is full. A thread waiting on the other announces it through a volatile
+ * flag before re-checking the buffer and parking, so that the other thread only unparks it when it actually waits.
+ */
+class PipelinedRecordProcessor implements RecordProcessor, Runnable {
+    private static final Logger LOG = Logger.getLogger(PipelinedRecordProcessor.class);
+    private final SpscRingBuffer<ConsumerRecords<Object, Object>> ringBuffer;
+    private final RecordDispatcher recordDispatcher;
+    private final String topics[];
+    // Poll that could not be handed over as the buffer was full, only accessed by the fetching thread
+    private ConsumerRecords<Object, Object> pendingRecords;
+    // Number of polls handed over to and processed by the processor thread, each only written by a single thread
+    private volatile long offeredCount;
+    private volatile long processedCount;
+    private volatile Thread processorThread;
+    private volatile boolean processorWaiting;
+    // Fetching thread waiting for the processed polls to catch up, only set while it waits
+    private volatile Thread awaitingThread;
+    private volatile boolean paused;
+    private volatile boolean inactive;
+
+    PipelinedRecordProcessor(RecordDispatcher recordDispatcher, String topics[], int bufferSize) {
+        this.recordDispatcher = recordDispatcher;
+        this.topics = topics;
+        this.ringBuffer = new SpscRingBuffer<>(bufferSize);
+    }
+
+    @Override
+    public void start(ExecutorService executorService) {
+        executorService.submit(this);
+    }
+
+    @Override
+    public boolean offer(ConsumerRecords<Object, Object> records) {
+        if (ringBuffer.offer(records)) {
+            offeredCount++;
+            signalProcessor();
+            return true;
+        }
+        pendingRecords = records;
+        return false;
+    }
+
+    @Override
+    public boolean flush() {
+        if (null != pendingRecords && ringBuffer.offer(pendingRecords)) {
+            offeredCount++;
+            pendingRecords = null;
+            signalProcessor();
+        }
+        return null == pendingRecords;
+    }
+
+    private void signalProcessor() {
+        // The offered count is written before reading the flag, hence a processor announcing its wait afterwards
+        // sees the handed over poll when it re-checks the buffer
+        if (processorWaiting) {
+            LockSupport.unpark(processorThread);
+        }
+    }
+
+    @Override
+    public Map<TopicPartition, OffsetAndMetadata> committableOffsets() {
+        // Records are processed in the order they are polled, hence the last processed offsets can be committed
+        return recordDispatcher.processedOffsets(topics);
+    }
+
+    @Override
+    public boolean awaitProcessed(long timeout) {
+        long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(timeout);
+        awaitingThread = Thread.currentThread();
+        try {
+            // The processor unparks this thread for each processed poll, which is re-checked after setting the thread
+            while (!flush() || processedCount < offeredCount) {
+                long remaining = deadline - System.nanoTime();
+                if (remaining <= 0) {
+                    return false;
+                }
+                LockSupport.parkNanos(this, remaining);
+            }
+            return true;
+        } finally {
+            awaitingThread = null;
+        }
+    }
+
+    @Override
+    public void pause() {
+        paused = true;
+    }
+
+    @Override
+    public void resume() {
+        paused = false;
+        LockSupport.unpark(processorThread);
+    }
+
+    @Override
+    public void shutdown() {
+        inactive = true;
+        LockSupport.unpark(processorThread);
+    }
+
+    @Override
+    public void run() {
+        processorThread = Thread.currentThread();
+        while (!inactive) {
+            ConsumerRecords<Object, Object> records = paused ? null : ringBuffer.poll();
+            if (null == records) {
+                processorWaiting = true;
+                // Re-checked through the offered count after announcing the wait, as the fetching thread only
+                // unparks a waiting processor. Resuming and shutting down always unpark it
+                if (!inactive && (paused || offeredCount == processedCount)) {
+                    LockSupport.park(this);
+                }
+                processorWaiting = false;
+                continue;
+            }
+            try {
+                recordDispatcher.dispatch(records);
+            } catch (Throwable t) {
+                LOG.error("Error while processing Kafka records in the pipelined processor", t);
+            }
+            processedCount++;
+            Thread waitingThread = awaitingThread;
+            if (null != waitingThread) {
+                LockSupport.unpark(waitingThread);
+            }
+        }
+        // Records left in the buffer are not committed, hence they are consumed again after a restart
+        ringBuffer.clear();
+    }
+}
@@ -0,0 +1,125 @@
+/*
+ * Copyright (c) 2017, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ * WSO2 Inc. licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.wso2.siddhi.extension.input.transport.kafka;
+
+import org.apache.kafka.clients.consumer.ConsumerRecord;
+import org.apache.kafka.clients.consumer.ConsumerRecords;
+import org.apache.kafka.clients.consumer.OffsetAndMetadata;
+import org.apache.kafka.common.TopicPartition;
+import org.apache.log4j.Logger;
+import org.wso2.siddhi.core.stream.input.source.SourceEventListener;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Hands the records of a poll over to siddhi, either one by one or as arrays when batch delivery is enabled, and
+ * keeps track of the offsets of the records delivered.
+ */
+class RecordDispatcher {
+    private static final Logger LOG = Logger.getLogger(RecordDispatcher.class);
+    private final SourceEventListener sourceEventListener;
+    private final TopicOffsetTable topicOffsetTable;
+    // When enabled, the records of each poll are handed over to siddhi as arrays of at most batchMaxSize events
+    private final boolean batchDelivery;
+    private final int batchMaxSize;
+    private final RecordFraming recordFraming;
+    private final KafkaSourceMetrics sourceMetrics;
+
+    RecordDispatcher(SourceEventListener sourceEventListener, TopicOffsetTable topicOffsetTable,
+                     boolean batchDelivery, int batchMaxSize, RecordFraming recordFraming,
+                     KafkaSourceMetrics sourceMetrics) {
+        this.sourceEventListener = sourceEventListener;
+        this.topicOffsetTable = topicOffsetTable;
+        this.batchDelivery = batchDelivery;
+        this.batchMaxSize = batchMaxSize;
+        this.recordFraming = recordFraming;
+        this.sourceMetrics = sourceMetrics;
+    }
+
+    void dispatch(ConsumerRecords<Object, Object> records) {
+        long startTime = System.nanoTime();
+        try {
+            deliver(records);
+        } finally {
+            sourceMetrics.processed(System.nanoTime() - startTime);
+        }
+    }
+
+    private void deliver(ConsumerRecords<Object, Object> records) {
+        int remaining = records.count();
+        Object[] batch = null;
+        ConsumerRecord[] batchRecords = null;
+        int batchIndex = 0;
+        for (ConsumerRecord record : records) {
+            // The value is already a String or a byte[] depending on the configured deserializer, hence it
+            // is passed to the mapper as it is
+            Object event = record.value();
+            if (LOG.isDebugEnabled()) {
+                LOG.debug("Event received in Kafka Event Adaptor: " + event + ", offSet: " + record.offset()
+                        + ", key: " + record.key() + ", topic: " + record.topic() + ", partition: " + record
+                        .partition());
+            }
+            if (recordFraming != RecordFraming.NONE) {
+                // A framed record carries its own batch of events
+                recordFraming.deliver(event, sourceEventListener, batchDelivery, batchMaxSize);
+                topicOffsetTable.update(record.topic(), record.partition(), record.offset());
+                continue;
+            }
+            // Offsets are only stored once siddhi received the events, so that a snapshot never covers events which
+            // are not delivered yet
+            if (batchDelivery) {
+                if (null == batch) {
+                    batch = new Object[Math.min(remaining, batchMaxSize)];
+                    batchRecords = new ConsumerRecord[batch.length];
+                    batchIndex = 0;
+                }
+                batchRecords[batchIndex] = record;
+                batch[batchIndex++] = event;
+                remaining--;
+                if (batchIndex == batch.length) {
+                    sourceEventListener.onEvent(batch);
+                    for (ConsumerRecord deliveredRecord : batchRecords) {
+                        topicOffsetTable.update(deliveredRecord.topic(), deliveredRecord.partition(),
+                                deliveredRecord.offset());
+                    }
+                    batch = null;
+                }
+            } else {
+                sourceEventListener.onEvent(event);
+                topicOffsetTable.update(record.topic(), record.partition(), record.offset());
+            }
+        }
+    }
+
+    /**
+     * @param topics topics of the consumer
+     * @return offsets following the last delivered records of the given topics, in the form they are committed
+     */
+    Map<TopicPartition, OffsetAndMetadata> processedOffsets(String topics[]) {
+        Map<TopicPartition, OffsetAndMetadata> offsets = new HashMap<>();
+        for (String topic : topics) {
+            for (Map.Entry<Integer, Long> entry : topicOffsetTable.getOffsets(topic).entrySet()) {
+                // The committed offset is the offset of the next record to be consumed
+                offsets.put(new TopicPartition(topic, entry.getKey()), new OffsetAndMetadata(entry.getValue() + 1));
+            }
+        }
+        return offsets;
+    }
+}
@@ -0,0 +1,148 @@
+/*
+ * Copyright (c) 2017, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ * WSO2 Inc. licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.wso2.siddhi.extension.input.transport.kafka;
+
+import org.apache.log4j.Logger;
+import org.wso2.siddhi.core.stream.input.source.SourceEventListener;
+import org.wso2.siddhi.query.api.exception.ExecutionPlanValidationException;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Locale;
+
+/**
+ * Framing of Kafka records which carry several events, as written by the Kafka sink when it aggregates events.
+ * Framed records are split back into their events before they are handed over to siddhi.
+ */
+enum RecordFraming {
+    /**
+     * Each record is a single event.
+     */
+    NONE {
+        @Override
+        List<Object> split(Object value) {
+            return Collections.singletonList(value);
+        }
+
+        @Override
+        void deliver(Object value, SourceEventListener sourceEventListener, boolean batchDelivery,
+                     int batchMaxSize) {
+            sourceEventListener.onEvent(batchDelivery ? new Object[]{value} : value);
+        }
+    },
+    /**
+     * Events are terminated by a newline. Works with both String and byte[] values.
+     */
+    NEWLINE {
+        @Override
+        List<Object> split(Object value) {
+            List<Object> events = new ArrayList<>();
+            if (value instanceof byte[]) {
+                byte[] bytes = (byte[]) value;
+                int start = 0;
+                for (int i = 0; i <= bytes.length; i++) {
+                    if (i == bytes.length || bytes[i] == '\n') {
+                        if (i > start) {
+                            events.add(Arrays.copyOfRange(bytes, start, i));
+                        }
+                        start = i + 1;
+                    }
+                }
+            } else {
+                String string = value.toString();
+                int start = 0;
+                int end;
+                while (start < string.length()) {
+                    end = string.indexOf('\n', start);
+                    if (end < 0) {
+                        end = string.length();
+                    }
+                    if (end > start) {
+                        events.add(string.substring(start, end));
+                    }
+                    start = end + 1;
+                }
+            }
+            return events;
+        }
+    },
+    /**
+     * Events are prefixed by their length as a four byte big endian integer. Requires byte[] values.
+     */
+    LENGTH_PREFIXED {
+        @Override
+        List<Object> split(Object value) {
+            byte[] bytes = (byte[]) value;
+            List<Object> events = new ArrayList<>();
+            int position = 0;
+            while (position + 4 <= bytes.length) {
+                int length = (bytes[position] & 0xff) << 24 | (bytes[position + 1] & 0xff) << 16
+                        | (bytes[position + 2] & 0xff) << 8 | (bytes[position + 3] & 0xff);
+                position += 4;
+                if (length < 0 || length > bytes.length - position) {
+                    LOG.warn("Dropping the rest of a malformed length prefixed Kafka record, frame length " + length
+                            + " exceeds the " + (bytes.length - position) + " bytes remaining.");
+                    return events;
+                }
+                events.add(Arrays.copyOfRange(bytes, position, position + length));
+                position += length;
+            }
+            return events;
+        }
+    };
+
+    private static final Logger LOG = Logger.getLogger(RecordFraming.class);
+
+    abstract List<Object> split(Object value);
+
+    /**
+     * Splits a record value into its events and hands them over to siddhi, as arrays of at most batchMaxSize events
+     * when batch delivery is enabled.
+     */
+    void deliver(Object value, SourceEventListener sourceEventListener, boolean batchDelivery, int batchMaxSize) {
+        List<Object> events = split(value);
+        if (batchDelivery) {
+            for (int from = 0; from < events.size(); from += batchMaxSize) {
+                sourceEventListener.onEvent(events.subList(from, Math.min(events.size(), from + batchMaxSize))
+                        .toArray());
+            }
+        } else {
+            for (Object event : events) {
+                sourceEventListener.onEvent(event);
+            }
+        }
+    }
+
+    static RecordFraming fromName(String name) {
+        switch (name.toLowerCase(Locale.ENGLISH)) {
+            case "none":
+                return NONE;
+            case "newline":
+                return NEWLINE;
+            case "length.prefixed":
+                return LENGTH_PREFIXED;
+            default:
+                throw new ExecutionPlanValidationException("Unsupported value '" + name + "' for option "
+                        + "'record.framing' of Kafka source. Supported values are 'none', 'newline' and "
+                        + "'length.prefixed'.");
+        }
+    }
+}
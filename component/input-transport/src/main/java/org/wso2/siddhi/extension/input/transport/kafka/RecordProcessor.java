@@ -0,0 +1,68 @@
+/*
+ * Copyright (c) 2017, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ * WSO2 Inc. licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.wso2.siddhi.extension.input.transport.kafka;
+
+import org.apache.kafka.clients.consumer.ConsumerRecords;
+import org.apache.kafka.clients.consumer.OffsetAndMetadata;
+import org.apache.kafka.common.TopicPartition;
+
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+
+/**
+ * Processes the records polled by a {@link KafkaConsumerThread} on threads other than the consumer thread.
+ */
+interface RecordProcessor {
+
+    void start(ExecutorService executorService);
+
+    /**
+     * Hands the records of a poll over for processing.
+     *
+     * @param records records of the poll
+     * @return false if the records could not be fully accepted, the rest is kept and handed over through
+     * {@link #flush()}, while the consumer has to stop fetching
+     */
+    boolean offer(ConsumerRecords<Object, Object> records);
+
+    /**
+     * @return true if there are no records left from an earlier {@link #offer(ConsumerRecords)}
+     */
+    boolean flush();
+
+    /**
+     * @return offsets which can be committed safely, as all records before them have been processed
+     */
+    Map<TopicPartition, OffsetAndMetadata> committableOffsets();
+
+    /**
+     * Waits until the records handed over so far are processed, so that their offsets can be committed before the
+     * partitions are revoked from the consumer. Called by the consumer thread.
+     *
+     * @param timeout time in milliseconds to wait at most
+     * @return false if records are still being processed after the timeout
+     */
+    boolean awaitProcessed(long timeout);
+
+    void pause();
+
+    void resume();
+
+    void shutdown();
+}
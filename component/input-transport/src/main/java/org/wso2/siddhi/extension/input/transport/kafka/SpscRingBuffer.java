@@ -0,0 +1,85 @@
+/*
+ * Copyright (c) 2017, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ * WSO2 Inc. licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.wso2.siddhi.extension.input.transport.kafka;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * Bounded lock free ring buffer for handing elements over from a single producer thread to a single consumer thread.
+ * The capacity is rounded up to the next power of two.
+ *
+ * @param <E> type of the elements
+ */
+class SpscRingBuffer<E> {
+    private final AtomicReferenceArray<E> buffer;
+    private final int mask;
+    // Next slot to read, only advanced by the consumer
+    private final AtomicLong head = new AtomicLong();
+    // Next slot to write, only advanced by the producer
+    private final AtomicLong tail = new AtomicLong();
+
+    SpscRingBuffer(int capacity) {
+        if (capacity <= 0) {
+            throw new IllegalArgumentException("Ring buffer capacity must be positive, but found: " + capacity);
+        }
+        int size = Integer.highestOneBit(capacity);
+        if (size < capacity) {
+            size <<= 1;
+        }
+        this.buffer = new AtomicReferenceArray<>(size);
+        this.mask = size - 1;
+    }
+
+    boolean offer(E element) {
+        long currentTail = tail.get();
+        if (currentTail - head.get() == buffer.length()) {
+            return false;
+        }
+        buffer.lazySet((int) currentTail & mask, element);
+        tail.lazySet(currentTail + 1);
+        return true;
+    }
+
+    E poll() {
+        long currentHead = head.get();
+        if (currentHead == tail.get()) {
+            return null;
+        }
+        int index = (int) currentHead & mask;
+        E element = buffer.get(index);
+        buffer.lazySet(index, null);
+        head.lazySet(currentHead + 1);
+        return element;
+    }
+
+    int capacity() {
+        return buffer.length();
+    }
+
+    boolean isEmpty() {
+        return head.get() == tail.get();
+    }
+
+    void clear() {
+        while (poll() != null) {
+            // discard
+        }
+    }
+}
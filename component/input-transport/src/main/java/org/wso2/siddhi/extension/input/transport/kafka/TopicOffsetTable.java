@@ -0,0 +1,134 @@
+/*
+ * Copyright (c) 2017, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ * WSO2 Inc. licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.wso2.siddhi.extension.input.transport.kafka;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * Keeps the last processed offset of each topic partition. Offsets are held in primitive slots which are allocated
+ * in chunks the first time a partition is seen, hence updates from the record loop neither lock nor allocate, and
+ * the table can be shared by all consumer threads of a source.
+ */
+class TopicOffsetTable {
+    static final long NO_OFFSET = -1;
+    private static final int CHUNK_BITS = 6;
+    private static final int CHUNK_SIZE = 1 << CHUNK_BITS;
+    private static final int CHUNK_MASK = CHUNK_SIZE - 1;
+    // Supports partition numbers up to 65535
+    private static final int MAX_CHUNKS = 1024;
+    private final Map<String, AtomicReferenceArray<AtomicLongArray>> topicChunks = new ConcurrentHashMap<>();
+
+    void update(String topic, int partition, long offset) {
+        chunk(topic, partition).lazySet(partition & CHUNK_MASK, offset);
+    }
+
+    /**
+     * Updates the offset unless it is behind the current one, for threads completing the records of a partition out
+     * of order.
+     */
+    void advance(String topic, int partition, long offset) {
+        AtomicLongArray chunk = chunk(topic, partition);
+        int index = partition & CHUNK_MASK;
+        long currentOffset = chunk.get(index);
+        while (currentOffset < offset && !chunk.compareAndSet(index, currentOffset, offset)) {
+            currentOffset = chunk.get(index);
+        }
+    }
+
+    /**
+     * @return the last processed offset of the partition or {@link #NO_OFFSET} if it is not known
+     */
+    long get(String topic, int partition) {
+        AtomicReferenceArray<AtomicLongArray> chunks = topicChunks.get(topic);
+        if (null == chunks) {
+            return NO_OFFSET;
+        }
+        AtomicLongArray chunk = chunks.get(partition >>> CHUNK_BITS);
+        return (null == chunk) ? NO_OFFSET : chunk.get(partition & CHUNK_MASK);
+    }
+
+    /**
+     * @return the known offsets of the topic keyed by partition
+     */
+    Map<Integer, Long> getOffsets(String topic) {
+        Map<Integer, Long> offsets = new HashMap<>();
+        AtomicReferenceArray<AtomicLongArray> chunks = topicChunks.get(topic);
+        if (null != chunks) {
+            for (int i = 0; i < chunks.length(); i++) {
+                AtomicLongArray chunk = chunks.get(i);
+                if (null != chunk) {
+                    for (int j = 0; j < CHUNK_SIZE; j++) {
+                        long offset = chunk.get(j);
+                        if (offset != NO_OFFSET) {
+                            offsets.put((i << CHUNK_BITS) + j, offset);
+                        }
+                    }
+                }
+            }
+        }
+        return offsets;
+    }
+
+    /**
+     * @return a copy of the table in the form it is persisted in snapshots
+     */
+    Map<String, Map<Integer, Long>> snapshot() {
+        Map<String, Map<Integer, Long>> snapshot = new HashMap<>();
+        for (String topic : topicChunks.keySet()) {
+            snapshot.put(topic, getOffsets(topic));
+        }
+        return snapshot;
+    }
+
+    void restore(Map<String, Map<Integer, Long>> topicOffsetMap) {
+        if (null != topicOffsetMap) {
+            for (Map.Entry<String, Map<Integer, Long>> topicEntry : topicOffsetMap.entrySet()) {
+                for (Map.Entry<Integer, Long> entry : topicEntry.getValue().entrySet()) {
+                    update(topicEntry.getKey(), entry.getKey(), entry.getValue());
+                }
+            }
+        }
+    }
+
+    private AtomicLongArray chunk(String topic, int partition) {
+        AtomicReferenceArray<AtomicLongArray> chunks = topicChunks.get(topic);
+        if (null == chunks) {
+            chunks = topicChunks.computeIfAbsent(topic, key -> new AtomicReferenceArray<>(MAX_CHUNKS));
+        }
+        int index = partition >>> CHUNK_BITS;
+        AtomicLongArray chunk = chunks.get(index);
+        if (null == chunk) {
+            AtomicLongArray newChunk = new AtomicLongArray(CHUNK_SIZE);
+            for (int i = 0; i < CHUNK_SIZE; i++) {
+                newChunk.set(i, NO_OFFSET);
+            }
+            // Chunks are never replaced once set, hence no update can get lost
+            if (!chunks.compareAndSet(index, null, newChunk)) {
+                chunk = chunks.get(index);
+            } else {
+                chunk = newChunk;
+            }
+        }
+        return chunk;
+    }
+}
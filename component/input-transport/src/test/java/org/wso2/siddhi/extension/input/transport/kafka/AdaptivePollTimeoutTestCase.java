@@ -0,0 +1,113 @@
+/*
+ * Copyright (c) 2017, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ * WSO2 Inc. licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.wso2.siddhi.extension.input.transport.kafka;
+
+import org.junit.Test;
+
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertEquals;
+
+public class AdaptivePollTimeoutTestCase {
+
+    @Test
+    public void testEmptyPollsBackOff() {
+        AdaptivePollTimeout pollTimeout = new AdaptivePollTimeout(10, 1000);
+        assertEquals(10, pollTimeout.getTimeout());
+        long expectedTimeout = 10;
+        for (int i = 0; i < 10; i++) {
+            pollTimeout.onPoll(0, 0);
+            expectedTimeout = Math.min(1000, expectedTimeout * 2);
+            assertEquals(expectedTimeout, pollTimeout.getTimeout());
+        }
+        assertEquals(1000, pollTimeout.getTimeout());
+    }
+
+    @Test
+    public void testZeroFloorBacksOff() {
+        AdaptivePollTimeout pollTimeout = new AdaptivePollTimeout(0, 8);
+        pollTimeout.onPoll(0, 0);
+        assertEquals(1, pollTimeout.getTimeout());
+        pollTimeout.onPoll(0, 0);
+        assertEquals(2, pollTimeout.getTimeout());
+    }
+
+    @Test
+    public void testFullPollDropsToFloor() {
+        AdaptivePollTimeout pollTimeout = idleTimeout();
+        pollTimeout.onPoll(500, 0);
+        assertEquals(10, pollTimeout.getTimeout());
+        // Half of the largest recent poll still counts as full
+        idle(pollTimeout);
+        pollTimeout.onPoll((int) (500 * AdaptivePollTimeout.FULL_FILL_RATIO), 0);
+        assertEquals(10, pollTimeout.getTimeout());
+    }
+
+    @Test
+    public void testSparsePollHalvesTimeout() {
+        AdaptivePollTimeout pollTimeout = idleTimeout();
+        pollTimeout.onPoll(500, 0);
+        idle(pollTimeout);
+        // A trickle of records compared to the recent polls
+        pollTimeout.onPoll(5, 0);
+        assertEquals(500, pollTimeout.getTimeout());
+        pollTimeout.onPoll(5, 0);
+        assertEquals(250, pollTimeout.getTimeout());
+        for (int i = 0; i < 10; i++) {
+            pollTimeout.onPoll(5, 0);
+        }
+        assertEquals(10, pollTimeout.getTimeout());
+    }
+
+    @Test
+    public void testSlowProcessingDropsToFloor() {
+        AdaptivePollTimeout pollTimeout = idleTimeout();
+        pollTimeout.onPoll(500, 0);
+        idle(pollTimeout);
+        // Records arrived while the sparse poll took longer to process than the timeout
+        pollTimeout.onPoll(5, TimeUnit.MILLISECONDS.toNanos(1000));
+        assertEquals(10, pollTimeout.getTimeout());
+    }
+
+    @Test
+    public void testFixedTimeout() {
+        AdaptivePollTimeout pollTimeout = new AdaptivePollTimeout(100, 100);
+        pollTimeout.onPoll(0, 0);
+        pollTimeout.onPoll(5, 0);
+        assertEquals(100, pollTimeout.getTimeout());
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testInvalidBounds() {
+        new AdaptivePollTimeout(100, 10);
+    }
+
+    private static AdaptivePollTimeout idleTimeout() {
+        AdaptivePollTimeout pollTimeout = new AdaptivePollTimeout(10, 1000);
+        idle(pollTimeout);
+        return pollTimeout;
+    }
+
+    private static void idle(AdaptivePollTimeout pollTimeout) {
+        for (int i = 0; i < 10; i++) {
+            pollTimeout.onPoll(0, 0);
+        }
+        assertEquals(1000, pollTimeout.getTimeout());
+    }
+}
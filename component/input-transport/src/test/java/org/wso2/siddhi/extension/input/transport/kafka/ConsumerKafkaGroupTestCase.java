@@ -0,0 +1,117 @@
+/*
+ * Copyright (c) 2017, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ * WSO2 Inc. licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.wso2.siddhi.extension.input.transport.kafka;
+
+import org.apache.kafka.clients.consumer.ConsumerRecord;
+import org.apache.kafka.common.TopicPartition;
+import org.junit.After;
+import org.junit.Test;
+import org.wso2.siddhi.core.stream.input.source.SourceEventListener;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Properties;
+import java.util.Set;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class ConsumerKafkaGroupTestCase {
+    private static final String TOPIC = "kafka_topic";
+    private final List<Object> events = Collections.synchronizedList(new ArrayList<>());
+    private final List<Thread> eventThreads = new CopyOnWriteArrayList<>();
+    private final SourceEventListener sourceEventListener = event -> {
+        events.add(event);
+        eventThreads.add(Thread.currentThread());
+    };
+    private final List<KafkaConsumerThreadTestCase.TestConsumer> consumers = new CopyOnWriteArrayList<>();
+    private ConsumerKafkaGroup consumerKafkaGroup;
+
+    @After
+    public void tearDown() throws InterruptedException {
+        if (null != consumerKafkaGroup) {
+            consumerKafkaGroup.shutdown();
+            // The threads of the group end once their consumers are closed
+            for (Thread thread : eventThreads) {
+                KafkaConsumerThreadTestCase.waitFor(() -> !thread.isAlive());
+            }
+        }
+    }
+
+    @Test
+    public void testSingleThreadRunsOnNamedThread() throws InterruptedException {
+        ConsumerOptions consumerOptions = KafkaConsumerThreadTestCase.consumerOptions();
+        consumerOptions.setDaemonThreads(true);
+        consumerKafkaGroup = consumerKafkaGroup(KafkaSource.SINGLE_THREADED, new String[]{"0"}, consumerOptions);
+        // Returns while the consumer keeps polling, rather than polling on the thread connecting the source
+        consumerKafkaGroup.run(sourceEventListener);
+        assertEquals(1, consumers.size());
+        KafkaConsumerThreadTestCase.waitFor(() -> !consumers.get(0).pollTimeouts.isEmpty());
+
+        addRecord(consumers.get(0), 0);
+        KafkaConsumerThreadTestCase.waitFor(() -> events.size() == 1);
+        Thread consumerThread = eventThreads.get(0);
+        assertTrue(consumerThread != Thread.currentThread());
+        assertEquals("KafkaConsumer-" + TOPIC + "-1", consumerThread.getName());
+        assertTrue(consumerThread.isDaemon());
+    }
+
+    @Test
+    public void testPartitionWiseThreads() throws InterruptedException {
+        consumerKafkaGroup = consumerKafkaGroup(KafkaSource.PARTITION_WISE, new String[]{"0", "1"},
+                KafkaConsumerThreadTestCase.consumerOptions());
+        consumerKafkaGroup.run(sourceEventListener);
+        assertEquals(2, consumers.size());
+
+        for (int partition = 0; partition < 2; partition++) {
+            addRecord(consumers.get(partition), partition);
+        }
+        KafkaConsumerThreadTestCase.waitFor(() -> events.size() == 2);
+        // Each partition is consumed on a thread of its own
+        Set<String> threadNames = new HashSet<>();
+        for (Thread thread : eventThreads) {
+            assertTrue(thread.getName().startsWith("KafkaConsumer-" + TOPIC + "-"));
+            assertFalse(thread.isDaemon());
+            threadNames.add(thread.getName());
+        }
+        assertEquals(2, threadNames.size());
+    }
+
+    private ConsumerKafkaGroup consumerKafkaGroup(String threadingOption, String partitions[],
+                                                  ConsumerOptions consumerOptions) {
+        return new ConsumerKafkaGroup(new String[]{TOPIC}, partitions, new Properties(), new TopicOffsetTable(),
+                threadingOption, consumerOptions, new KafkaSourceMetrics(), props -> {
+                    KafkaConsumerThreadTestCase.TestConsumer consumer = new KafkaConsumerThreadTestCase.TestConsumer();
+                    for (String partition : partitions) {
+                        consumer.updateBeginningOffsets(Collections.singletonMap(
+                                new TopicPartition(TOPIC, Integer.parseInt(partition)), 0L));
+                    }
+                    consumers.add(consumer);
+                    return consumer;
+                });
+    }
+
+    private static void addRecord(KafkaConsumerThreadTestCase.TestConsumer consumer, int partition) {
+        consumer.addRecord(new ConsumerRecord<>(TOPIC, partition, 0, null, partition + ":0"));
+    }
+}
@@ -0,0 +1,71 @@
+/*
+ * Copyright (c) 2017, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ * WSO2 Inc. licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.wso2.siddhi.extension.input.transport.kafka;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+
+public class ConsumerScalerTestCase {
+
+    @Test
+    public void testScaleUp() {
+        ConsumerScaler consumerScaler = new ConsumerScaler(1, 3, 1000);
+        assertEquals(0, consumerScaler.evaluate(1, -1, 4));
+        assertEquals(0, consumerScaler.evaluate(1, 500, 4));
+        assertEquals(1, consumerScaler.evaluate(1, 5000, 4));
+        // The lag is shrinking already
+        assertEquals(0, consumerScaler.evaluate(2, 4000, 4));
+        assertEquals(1, consumerScaler.evaluate(2, 4500, 4));
+        // Bound by the maximum number of consumers and by the number of partitions
+        assertEquals(0, consumerScaler.evaluate(3, 6000, 4));
+        assertEquals(0, consumerScaler.evaluate(2, 7000, 2));
+    }
+
+    @Test
+    public void testScaleDown() {
+        ConsumerScaler consumerScaler = new ConsumerScaler(1, 3, 1000);
+        assertEquals(0, consumerScaler.evaluate(3, 10, 4));
+        assertEquals(0, consumerScaler.evaluate(3, 10, 4));
+        assertEquals(-1, consumerScaler.evaluate(3, 10, 4));
+        assertEquals(0, consumerScaler.evaluate(2, 10, 4));
+        // A moderate lag resets the low lag checks
+        assertEquals(0, consumerScaler.evaluate(2, 500, 4));
+        assertEquals(0, consumerScaler.evaluate(2, 10, 4));
+        assertEquals(0, consumerScaler.evaluate(2, 10, 4));
+        assertEquals(-1, consumerScaler.evaluate(2, 10, 4));
+        assertEquals(0, consumerScaler.evaluate(1, 10, 4));
+        assertEquals(0, consumerScaler.evaluate(1, 10, 4));
+        assertEquals(0, consumerScaler.evaluate(1, 10, 4));
+    }
+
+    @Test
+    public void testPartitionCap() {
+        ConsumerScaler consumerScaler = new ConsumerScaler(1, 8, 1000);
+        assertEquals(1, consumerScaler.evaluate(1, 5000, 3));
+        assertEquals(1, consumerScaler.evaluate(2, 6000, 3));
+        // A consumer beyond the number of partitions would stay idle, however high the lag grows
+        assertEquals(0, consumerScaler.evaluate(3, 7000, 3));
+        assertEquals(0, consumerScaler.evaluate(3, 50000, 3));
+        // Partitions added to the topic allow further consumers
+        assertEquals(1, consumerScaler.evaluate(3, 60000, 4));
+        // Nothing is added until the partitions of the topics are known
+        assertEquals(0, new ConsumerScaler(1, 8, 1000).evaluate(1, 5000, 0));
+    }
+}
@@ -0,0 +1,317 @@
+/*
+ * Copyright (c) 2017, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ * WSO2 Inc. licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.wso2.siddhi.extension.input.transport.kafka;
+
+import org.apache.kafka.clients.consumer.ConsumerRebalanceListener;
+import org.apache.kafka.clients.consumer.ConsumerRecord;
+import org.apache.kafka.clients.consumer.ConsumerRecords;
+import org.apache.kafka.clients.consumer.MockConsumer;
+import org.apache.kafka.clients.consumer.OffsetResetStrategy;
+import org.apache.kafka.common.TopicPartition;
+import org.junit.After;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.BooleanSupplier;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+public class KafkaConsumerThreadTestCase {
+    private static final String TOPIC = "kafka_topic";
+    private static final long MIN_POLL_TIMEOUT = 10;
+    private final List<Object> events = Collections.synchronizedList(new ArrayList<>());
+    private final ExecutorService executorService = Executors.newCachedThreadPool();
+    private final TestConsumer consumer = new TestConsumer();
+    private final TopicPartition partition0 = new TopicPartition(TOPIC, 0);
+    private final TopicPartition partition1 = new TopicPartition(TOPIC, 1);
+    private KafkaConsumerThread consumerThread;
+
+    @After
+    public void tearDown() throws InterruptedException {
+        if (null != consumerThread) {
+            consumerThread.shutdownConsumer();
+        }
+        executorService.shutdown();
+        assertTrue(executorService.awaitTermination(10, TimeUnit.SECONDS));
+    }
+
+    @Test
+    public void testPauseWithoutBusyPolling() throws InterruptedException {
+        consumer.updateBeginningOffsets(Collections.singletonMap(partition0, 0L));
+        consumerThread = new KafkaConsumerThread(events::add, new String[]{TOPIC}, new String[]{"0"}, consumer,
+                new TopicOffsetTable(), consumerOptions(), new KafkaSourceMetrics());
+        executorService.submit(consumerThread);
+        addRecords(0, 0, 5);
+        waitFor(() -> events.size() == 5);
+
+        consumerThread.pause();
+        waitFor(() -> consumer.pausedPartitions.contains(partition0));
+        int pollCount = consumer.pollTimeouts.size();
+        Thread.sleep(300);
+        List<Long> pausedPollTimeouts = new ArrayList<>(consumer.pollTimeouts.subList(pollCount,
+                consumer.pollTimeouts.size()));
+        // The paused consumer keeps polling to stay in the group, but blocks in each poll instead of spinning
+        assertTrue(!pausedPollTimeouts.isEmpty());
+        assertTrue("Polled " + pausedPollTimeouts.size() + " times while paused", pausedPollTimeouts.size() <= 40);
+        for (long pollTimeout : pausedPollTimeouts) {
+            assertTrue(pollTimeout >= MIN_POLL_TIMEOUT);
+        }
+        assertEquals(5, events.size());
+
+        consumerThread.resume();
+        waitFor(consumer.pausedPartitions::isEmpty);
+        addRecords(0, 5, 5);
+        waitFor(() -> events.size() == 10);
+        for (int i = 0; i < 10; i++) {
+            assertEquals("0:" + i, events.get(i));
+        }
+    }
+
+    @Test
+    public void testRewindOfPartitionsAssignedWhilePaused() throws InterruptedException {
+        Map<TopicPartition, Long> beginningOffsets = new HashMap<>();
+        beginningOffsets.put(partition0, 0L);
+        beginningOffsets.put(partition1, 0L);
+        consumer.updateBeginningOffsets(beginningOffsets);
+        consumer.rebalanceOnPoll(Collections.singletonList(partition0));
+        consumerThread = new KafkaConsumerThread(events::add, new String[]{TOPIC}, null, consumer,
+                new TopicOffsetTable(), consumerOptions(), new KafkaSourceMetrics());
+        executorService.submit(consumerThread);
+        waitFor(() -> consumer.assignment().contains(partition0));
+        addRecords(0, 0, 5);
+        waitFor(() -> events.size() == 5);
+
+        consumerThread.pause();
+        waitFor(() -> consumer.pausedPartitions.contains(partition0));
+        // The new partition is not paused yet when the rebalance hands its records over
+        consumer.rebalanceOnPoll(Arrays.asList(partition0, partition1),
+                ParallelRecordProcessorTestCase.records(1, null, 0, 5));
+        waitFor(() -> consumer.pausedPartitions.contains(partition1));
+
+        // The records are not delivered while paused, and they are consumed again once resumed
+        assertEquals(Long.valueOf(0), consumer.seeks.get(partition1));
+        assertEquals(0, consumer.position(partition1));
+        assertEquals(5, events.size());
+        consumerThread.resume();
+        waitFor(consumer.pausedPartitions::isEmpty);
+    }
+
+    @Test
+    public void testCommitOnSnapshot() throws InterruptedException {
+        Map<TopicPartition, Long> beginningOffsets = new HashMap<>();
+        beginningOffsets.put(partition0, 0L);
+        beginningOffsets.put(partition1, 0L);
+        consumer.updateBeginningOffsets(beginningOffsets);
+        ConsumerOptions consumerOptions = consumerOptions();
+        consumerOptions.setCommitOnSnapshot(true);
+        // Would commit after every poll if offsets were committed periodically
+        consumerOptions.setCommitBatchSize(1);
+        consumerOptions.setCommitInterval(0);
+        consumerThread = new KafkaConsumerThread(events::add, new String[]{TOPIC}, new String[]{"0", "1"}, consumer,
+                new TopicOffsetTable(), consumerOptions, new KafkaSourceMetrics());
+        executorService.submit(consumerThread);
+        addRecords(0, 0, 10);
+        addRecords(1, 0, 10);
+        waitFor(() -> events.size() == 20);
+        Thread.sleep(100);
+        assertNull(consumer.committed(partition0));
+
+        Map<Integer, Long> offsetMap = new HashMap<>();
+        offsetMap.put(0, 4L);
+        offsetMap.put(1, 7L);
+        // Partitions of other consumers are committed by their owners
+        offsetMap.put(2, 9L);
+        consumerThread.commitOnSnapshot(Collections.singletonMap(TOPIC, offsetMap));
+        waitFor(() -> null != consumer.committed(partition0));
+        // The next offset to consume is committed for the last offsets covered by the snapshot
+        assertEquals(5, consumer.committed(partition0).offset());
+        assertEquals(8, consumer.committed(partition1).offset());
+        assertNull(consumer.committed(new TopicPartition(TOPIC, 2)));
+
+        // Records processed after the snapshot are not committed when stopping, as a restore replays them
+        consumerThread.shutdownConsumer();
+        executorService.shutdown();
+        assertTrue(executorService.awaitTermination(10, TimeUnit.SECONDS));
+        assertEquals(5, consumer.committed(partition0).offset());
+        assertEquals(8, consumer.committed(partition1).offset());
+    }
+
+    @Test
+    public void testRestoredOffsetsSoughtOnAssignment() throws InterruptedException {
+        consumer.updateBeginningOffsets(Collections.singletonMap(partition0, 0L));
+        TopicOffsetTable topicOffsetTable = new TopicOffsetTable();
+        topicOffsetTable.update(TOPIC, 0, 4);
+        consumer.rebalanceOnPoll(Collections.singletonList(partition0));
+        consumerThread = new KafkaConsumerThread(events::add, new String[]{TOPIC}, null, consumer, topicOffsetTable,
+                consumerOptions(), new KafkaSourceMetrics());
+        executorService.submit(consumerThread);
+        // A subscribing consumer has no partitions before its first poll, hence it seeks them once assigned
+        waitFor(() -> consumer.seeks.containsKey(partition0));
+        assertEquals(Long.valueOf(5), consumer.seeks.get(partition0));
+    }
+
+    @Test
+    public void testRestoredOffsetsOfOtherConsumersDropped() throws InterruptedException {
+        Map<TopicPartition, Long> beginningOffsets = new HashMap<>();
+        beginningOffsets.put(partition0, 0L);
+        beginningOffsets.put(partition1, 0L);
+        consumer.updateBeginningOffsets(beginningOffsets);
+        consumer.rebalanceOnPoll(Collections.singletonList(partition0));
+        consumerThread = new KafkaConsumerThread(events::add, new String[]{TOPIC}, null, consumer,
+                new TopicOffsetTable(), consumerOptions(), new KafkaSourceMetrics());
+        executorService.submit(consumerThread);
+        waitFor(() -> consumer.assignment().contains(partition0));
+
+        Map<Integer, Long> offsetMap = new HashMap<>();
+        offsetMap.put(0, 4L);
+        offsetMap.put(1, 6L);
+        consumerThread.restore(Collections.singletonMap(TOPIC, offsetMap));
+        assertEquals(Long.valueOf(5), consumer.seeks.get(partition0));
+        assertFalse(consumer.seeks.containsKey(partition1));
+
+        // Partition 1 is restored by the consumer owning it, which commits its offsets before a rebalance moves it
+        consumer.rebalanceOnPoll(Arrays.asList(partition0, partition1));
+        waitFor(() -> consumer.assignment().contains(partition1));
+        addRecords(1, 0, 3);
+        waitFor(() -> events.size() == 3);
+        assertFalse(consumer.seeks.containsKey(partition1));
+        assertEquals("1:0", events.get(0));
+    }
+
+    static ConsumerOptions consumerOptions() {
+        ConsumerOptions consumerOptions = new ConsumerOptions();
+        consumerOptions.setBatchMaxSize(1);
+        consumerOptions.setMinPollTimeout(MIN_POLL_TIMEOUT);
+        consumerOptions.setMaxPollTimeout(50);
+        consumerOptions.setCommitBatchSize(1000);
+        consumerOptions.setCommitInterval(100000);
+        return consumerOptions;
+    }
+
+    private void addRecords(int partition, long fromOffset, int count) {
+        for (ConsumerRecord<Object, Object> record : ParallelRecordProcessorTestCase.records(partition, null,
+                fromOffset, count)) {
+            consumer.addRecord(record);
+        }
+    }
+
+    static void waitFor(BooleanSupplier condition) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + 10000;
+        while (!condition.getAsBoolean()) {
+            assertTrue("Timed out", System.currentTimeMillis() < deadline);
+            Thread.sleep(1);
+        }
+    }
+
+    /**
+     * Mock consumer which blocks in poll while no records are available, as a Kafka consumer does, rebalances within
+     * polls and keeps track of the pauses and seeks of the consumer thread.
+     */
+    static class TestConsumer extends MockConsumer<Object, Object> {
+        final List<Long> pollTimeouts = Collections.synchronizedList(new ArrayList<>());
+        final Set<TopicPartition> pausedPartitions = ConcurrentHashMap.newKeySet();
+        final Map<TopicPartition, Long> seeks = new ConcurrentHashMap<>();
+        private final AtomicReference<Collection<TopicPartition>> pendingAssignment = new AtomicReference<>();
+        private final Queue<ConsumerRecord<Object, Object>> pendingRecords = new ConcurrentLinkedQueue<>();
+        private volatile ConsumerRebalanceListener rebalanceListener;
+
+        TestConsumer() {
+            super(OffsetResetStrategy.EARLIEST);
+        }
+
+        /**
+         * Assigns the given partitions with the next poll and adds the given records of them.
+         */
+        void rebalanceOnPoll(Collection<TopicPartition> assignment, List<ConsumerRecord<Object, Object>> records) {
+            pendingRecords.addAll(records);
+            pendingAssignment.set(assignment);
+        }
+
+        void rebalanceOnPoll(Collection<TopicPartition> assignment) {
+            rebalanceOnPoll(assignment, Collections.emptyList());
+        }
+
+        @Override
+        public void subscribe(List<String> topics, ConsumerRebalanceListener listener) {
+            rebalanceListener = listener;
+            super.subscribe(topics, listener);
+        }
+
+        @Override
+        public ConsumerRecords<Object, Object> poll(long timeout) {
+            pollTimeouts.add(timeout);
+            Collection<TopicPartition> assignment = pendingAssignment.getAndSet(null);
+            if (null != assignment) {
+                // Kafka calls the rebalance listener on the consumer thread within a poll
+                rebalanceListener.onPartitionsRevoked(assignment());
+                rebalance(assignment);
+                pausedPartitions.retainAll(assignment);
+                rebalanceListener.onPartitionsAssigned(assignment);
+                ConsumerRecord<Object, Object> record;
+                while (null != (record = pendingRecords.poll())) {
+                    addRecord(record);
+                }
+            }
+            ConsumerRecords<Object, Object> records = super.poll(timeout);
+            if (records.isEmpty() && timeout > 0) {
+                try {
+                    Thread.sleep(timeout);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            }
+            return records;
+        }
+
+        @Override
+        public void pause(TopicPartition... partitions) {
+            super.pause(partitions);
+            pausedPartitions.addAll(Arrays.asList(partitions));
+        }
+
+        @Override
+        public void resume(TopicPartition... partitions) {
+            super.resume(partitions);
+            pausedPartitions.removeAll(Arrays.asList(partitions));
+        }
+
+        @Override
+        public void seek(TopicPartition partition, long offset) {
+            super.seek(partition, offset);
+            seeks.put(partition, offset);
+        }
+    }
+}
@@ -0,0 +1,62 @@
+/*
+ * Copyright (c) 2017, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ * WSO2 Inc. licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.wso2.siddhi.extension.input.transport.kafka;
+
+import org.junit.Test;
+import org.wso2.siddhi.query.api.exception.ExecutionPlanValidationException;
+
+import java.util.Properties;
+
+import static org.junit.Assert.assertEquals;
+
+public class KafkaSourceConfigTestCase {
+    private static final String BYTE_ARRAY_DESERIALIZER =
+            "org.apache.kafka.common.serialization.ByteArrayDeserializer";
+    private static final String STRING_DESERIALIZER = "org.apache.kafka.common.serialization.StringDeserializer";
+
+    @Test
+    public void testBinaryDeserializer() {
+        Properties props = KafkaSource.createConsumerConfig("localhost:9092", "group", "binary", null);
+        assertEquals(BYTE_ARRAY_DESERIALIZER, props.get("key.deserializer"));
+        assertEquals(BYTE_ARRAY_DESERIALIZER, props.get("value.deserializer"));
+        assertEquals("group", props.get("group.id"));
+    }
+
+    @Test
+    public void testStringDeserializer() {
+        for (String deserializer : new String[]{"string", "STRING"}) {
+            Properties props = KafkaSource.createConsumerConfig("localhost:9092", null, deserializer, null);
+            assertEquals(STRING_DESERIALIZER, props.get("key.deserializer"));
+            assertEquals(STRING_DESERIALIZER, props.get("value.deserializer"));
+        }
+    }
+
+    @Test
+    public void testOptionalConfigurationOverridesDeserializer() {
+        Properties props = KafkaSource.createConsumerConfig("localhost:9092", "group", "binary",
+                "value.deserializer:com.example.AvroDeserializer");
+        assertEquals(BYTE_ARRAY_DESERIALIZER, props.get("key.deserializer"));
+        assertEquals("com.example.AvroDeserializer", props.get("value.deserializer"));
+    }
+
+    @Test(expected = ExecutionPlanValidationException.class)
+    public void testUnsupportedDeserializer() {
+        KafkaSource.createConsumerConfig("localhost:9092", "group", "avro", null);
+    }
+}
@@ -40,6 +40,7 @@ import org.junit.Test;
 import org.wso2.siddhi.core.ExecutionPlanRuntime;
 import org.wso2.siddhi.core.SiddhiManager;
 import org.wso2.siddhi.core.event.Event;
+import org.wso2.siddhi.core.stream.input.InputHandler;
 import org.wso2.siddhi.core.stream.input.source.Source;
 import org.wso2.siddhi.core.stream.output.StreamCallback;
 import org.wso2.siddhi.core.util.EventPrinter;
@@ -566,6 +567,119 @@ public class KafkaSourceTestCase {
         }
     }
 
+    @Test
+    public void testKafkaSinkPublishingToPartition() throws InterruptedException {
+        try {
+            log.info("Test to verify that a Kafka sink with a partition number only publishes to that partition");
+            String topics[] = new String[]{"kafka_partition_topic"};
+            createTopic(topics, 2);
+            SiddhiManager siddhiManager = new SiddhiManager();
+            siddhiManager.setExtension("source.mapper:text", TextSourceMapper.class);
+            siddhiManager.setExtension("sink.mapper:text", TextSinkMapper.class);
+            ExecutionPlanRuntime executionPlanRuntime = siddhiManager.createExecutionPlanRuntime(
+                    "@Plan:name('TestExecutionPlan') " +
+                            "@sink(type='kafka', topic='kafka_partition_topic', bootstrap.servers='localhost:9092', " +
+                            "partition.no='1', " +
+                            "@map(type='text'))" +
+                            "define stream FooStream (symbol string, price float, volume long); " +
+                            "@source(type='kafka', topic='kafka_partition_topic', group.id='test', " +
+                            "threading.option='single.thread', bootstrap.servers='localhost:9092', " +
+                            "partition.no.list='1', " +
+                            "@map(type='text'))" +
+                            "define stream PartitionOneStream (symbol string, price float, volume long); " +
+                            "@source(type='kafka', topic='kafka_partition_topic', group.id='test', " +
+                            "threading.option='single.thread', bootstrap.servers='localhost:9092', " +
+                            "partition.no.list='0', " +
+                            "@map(type='text'))" +
+                            "define stream PartitionZeroStream (symbol string, price float, volume long); ");
+            executionPlanRuntime.addCallback("PartitionOneStream", new StreamCallback() {
+                @Override
+                public void receive(Event[] events) {
+                    for (Event event : events) {
+                        log.info(event);
+                        eventArrived = true;
+                        count++;
+                        assertEquals((long) count, event.getData(2));
+                    }
+                }
+            });
+            executionPlanRuntime.addCallback("PartitionZeroStream", new StreamCallback() {
+                @Override
+                public void receive(Event[] events) {
+                    org.junit.Assert.fail();
+                }
+            });
+            executionPlanRuntime.start();
+            Thread.sleep(2000);
+            InputHandler fooStream = executionPlanRuntime.getInputHandler("FooStream");
+            for (long i = 1; i <= 5; i++) {
+                fooStream.send(new Object[]{"wso2", 12.5f, i});
+            }
+            Thread.sleep(5000);
+            assertEquals(5, count);
+            assertTrue(eventArrived);
+            executionPlanRuntime.shutdown();
+        } catch (ZkTimeoutException ex) {
+            log.warn("No zookeeper may not be available.", ex);
+        }
+    }
+
+    @Test
+    public void testNewlineFramingDropsMultiLineMessages() throws InterruptedException {
+        try {
+            log.info("Test to verify that a Kafka sink with newline framing drops the messages holding a newline, "
+                    + "which a Kafka source with newline framing would otherwise receive as many events");
+            String topics[] = new String[]{"kafka_framing_topic"};
+            createTopic(topics, 1);
+            SiddhiManager siddhiManager = new SiddhiManager();
+            siddhiManager.setExtension("source.mapper:text", TextSourceMapper.class);
+            siddhiManager.setExtension("sink.mapper:text", TextSinkMapper.class);
+            ExecutionPlanRuntime executionPlanRuntime = siddhiManager.createExecutionPlanRuntime(
+                    "@Plan:name('TestExecutionPlan') " +
+                            "@sink(type='kafka', topic='kafka_framing_topic', bootstrap.servers='localhost:9092', " +
+                            "partition.no='0', record.framing='newline', batch.linger.ms='100', " +
+                            "@map(type='text'))" +
+                            "define stream FooStream (symbol string, price float, volume long); " +
+                            "@source(type='kafka', topic='kafka_framing_topic', group.id='test', " +
+                            "threading.option='single.thread', bootstrap.servers='localhost:9092', " +
+                            "record.framing='newline', " +
+                            "@map(type='text'))" +
+                            "define stream BarStream (symbol string, price float, volume long); ");
+            executionPlanRuntime.addCallback("BarStream", new StreamCallback() {
+                @Override
+                public void receive(Event[] events) {
+                    for (Event event : events) {
+                        log.info(event);
+                        eventArrived = true;
+                        count++;
+                        switch (count) {
+                            case 1:
+                                assertEquals(1L, event.getData(2));
+                                break;
+                            case 2:
+                                assertEquals(3L, event.getData(2));
+                                break;
+                            default:
+                                org.junit.Assert.fail();
+                        }
+                    }
+                }
+            });
+            executionPlanRuntime.start();
+            Thread.sleep(2000);
+            InputHandler fooStream = executionPlanRuntime.getInputHandler("FooStream");
+            fooStream.send(new Object[]{"wso2", 12.5f, 1L});
+            fooStream.send(new Object[]{"multi\nline", 12.5f, 2L});
+            fooStream.send(new Object[]{"ibm", 12.5f, 3L});
+            Thread.sleep(5000);
+            assertEquals(2, count);
+            assertTrue(eventArrived);
+            executionPlanRuntime.shutdown();
+        } catch (ZkTimeoutException ex) {
+            log.warn("No zookeeper may not be available.", ex);
+        }
+    }
+
     //    @Test
     public void testCreatingFullKafkaEventFlow() throws InterruptedException {
         Runnable kafkaReceiver = new KafkaFlow();
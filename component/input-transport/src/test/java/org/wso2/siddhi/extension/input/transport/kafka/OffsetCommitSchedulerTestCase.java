@@ -0,0 +1,102 @@
+/*
+ * Copyright (c) 2017, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ * WSO2 Inc. licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.wso2.siddhi.extension.input.transport.kafka;
+
+import org.apache.kafka.common.KafkaException;
+import org.junit.Test;
+
+import java.util.Collections;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class OffsetCommitSchedulerTestCase {
+    private final KafkaSourceMetrics sourceMetrics = new KafkaSourceMetrics();
+
+    @Test
+    public void testRecordCountTrigger() {
+        long startTime = System.currentTimeMillis();
+        OffsetCommitScheduler commitScheduler = new OffsetCommitScheduler(100, 60000, sourceMetrics);
+        assertFalse(commitScheduler.isCommitDue(startTime));
+        commitScheduler.recordsConsumed(99);
+        assertFalse(commitScheduler.isCommitDue(startTime));
+        commitScheduler.recordsConsumed(1);
+        assertTrue(commitScheduler.isCommitDue(startTime));
+
+        OffsetCommitScheduler.Commit commit = commitScheduler.commitStarted(startTime);
+        // No further commit is started while one is in progress
+        commitScheduler.recordsConsumed(100);
+        assertFalse(commitScheduler.isCommitDue(startTime));
+        commit.onComplete(Collections.emptyMap(), null);
+        // Records consumed while committing are left for the next commit
+        assertTrue(commitScheduler.isCommitDue(startTime));
+        commitScheduler.commitStarted(startTime).onComplete(Collections.emptyMap(), null);
+        assertFalse(commitScheduler.hasUncommittedRecords());
+        assertEquals(2, sourceMetrics.getCommitLatency().getCount());
+    }
+
+    @Test
+    public void testIntervalTrigger() {
+        long startTime = System.currentTimeMillis();
+        OffsetCommitScheduler commitScheduler = new OffsetCommitScheduler(1000, 500, sourceMetrics);
+        // Nothing is committed without records, however long ago the last commit was
+        assertFalse(commitScheduler.isCommitDue(startTime + 1000));
+        commitScheduler.recordsConsumed(1);
+        assertFalse(commitScheduler.isCommitDue(startTime + 100));
+        assertTrue(commitScheduler.isCommitDue(startTime + 1000));
+
+        commitScheduler.commitStarted(startTime + 1000).completed(null);
+        commitScheduler.recordsConsumed(1);
+        assertFalse(commitScheduler.isCommitDue(startTime + 1400));
+        assertTrue(commitScheduler.isCommitDue(startTime + 1500));
+    }
+
+    @Test
+    public void testFailedCommitKeepsRecords() {
+        long startTime = System.currentTimeMillis();
+        OffsetCommitScheduler commitScheduler = new OffsetCommitScheduler(10, 500, sourceMetrics);
+        commitScheduler.recordsConsumed(10);
+        commitScheduler.commitStarted(startTime).onComplete(Collections.emptyMap(),
+                new KafkaException("Commit failed"));
+        assertTrue(commitScheduler.hasUncommittedRecords());
+        assertEquals(1, sourceMetrics.getCommitFailures());
+        // A failed commit is retried after the interval rather than with the next poll
+        assertFalse(commitScheduler.isCommitDue(startTime + 100));
+        assertTrue(commitScheduler.isCommitDue(startTime + 500));
+        commitScheduler.commitStarted(startTime + 500).completed(null);
+        assertFalse(commitScheduler.hasUncommittedRecords());
+    }
+
+    @Test
+    public void testOverlappingCommits() throws InterruptedException {
+        OffsetCommitScheduler commitScheduler = new OffsetCommitScheduler(10, 500, sourceMetrics);
+        commitScheduler.recordsConsumed(10);
+        OffsetCommitScheduler.Commit asyncCommit = commitScheduler.commitStarted(System.currentTimeMillis());
+        Thread.sleep(50);
+        // A synchronous commit on shutdown while the asynchronous one is in progress
+        OffsetCommitScheduler.Commit syncCommit = commitScheduler.commitStarted(System.currentTimeMillis());
+        syncCommit.completed(null);
+        asyncCommit.completed(null);
+        // Each commit records its own latency, instead of the later start time overwriting the earlier one
+        assertEquals(2, sourceMetrics.getCommitLatency().getCount());
+        assertTrue(sourceMetrics.getCommitLatency().getMaxMicros() >= 50000);
+        assertFalse(commitScheduler.hasUncommittedRecords());
+    }
+}
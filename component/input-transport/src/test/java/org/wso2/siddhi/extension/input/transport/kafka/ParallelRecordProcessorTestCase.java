@@ -0,0 +1,197 @@
+/*
+ * Copyright (c) 2017, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ * WSO2 Inc. licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.wso2.siddhi.extension.input.transport.kafka;
+
+import org.apache.kafka.clients.consumer.ConsumerRecord;
+import org.apache.kafka.clients.consumer.ConsumerRecords;
+import org.apache.kafka.clients.consumer.OffsetAndMetadata;
+import org.apache.kafka.common.TopicPartition;
+import org.junit.After;
+import org.junit.Test;
+import org.wso2.siddhi.core.stream.input.source.SourceEventListener;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.function.BooleanSupplier;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class ParallelRecordProcessorTestCase {
+    private static final String TOPIC = "kafka_topic";
+    private final List<Object> events = Collections.synchronizedList(new ArrayList<>());
+    private final SourceEventListener sourceEventListener = events::add;
+    private final ExecutorService executorService = Executors.newCachedThreadPool();
+    private ParallelRecordProcessor recordProcessor;
+
+    @After
+    public void tearDown() {
+        if (null != recordProcessor) {
+            recordProcessor.shutdown();
+        }
+        executorService.shutdownNow();
+    }
+
+    @Test
+    public void testPartitionOrderAndCommittableOffsets() throws InterruptedException {
+        recordProcessor = new ParallelRecordProcessor(sourceEventListener, new TopicOffsetTable(),
+                consumerOptions(4, 1024, false), new KafkaSourceMetrics());
+        recordProcessor.start(executorService);
+        Map<TopicPartition, List<ConsumerRecord<Object, Object>>> records = new LinkedHashMap<>();
+        for (int partition = 0; partition < 3; partition++) {
+            records.put(new TopicPartition(TOPIC, partition), records(partition, null, 0, 100));
+        }
+        assertTrue(recordProcessor.offer(new ConsumerRecords<>(records)));
+        assertTrue(recordProcessor.awaitProcessed(10000));
+
+        assertEquals(300, events.size());
+        for (int partition = 0; partition < 3; partition++) {
+            assertInOrder(partition + ":");
+        }
+        Map<TopicPartition, OffsetAndMetadata> offsets = recordProcessor.committableOffsets();
+        assertEquals(3, offsets.size());
+        assertEquals(100, offsets.get(new TopicPartition(TOPIC, 1)).offset());
+    }
+
+    @Test
+    public void testFullWorkerBufferKeepsRecordsPending() throws InterruptedException {
+        recordProcessor = new ParallelRecordProcessor(sourceEventListener, new TopicOffsetTable(),
+                consumerOptions(1, 4, false), new KafkaSourceMetrics());
+        TopicPartition partition = new TopicPartition(TOPIC, 0);
+        // Workers are not started yet, hence only the records fitting into the worker buffer are handed over
+        assertFalse(recordProcessor.offer(new ConsumerRecords<>(Collections.singletonMap(partition,
+                records(0, null, 0, 10)))));
+        assertFalse(recordProcessor.flush());
+        assertEquals(0, recordProcessor.committableOffsets().get(partition).offset());
+
+        recordProcessor.start(executorService);
+        waitFor(recordProcessor::flush);
+        assertTrue(recordProcessor.awaitProcessed(10000));
+        assertEquals(10, events.size());
+        assertInOrder("0:");
+        assertEquals(10, recordProcessor.committableOffsets().get(partition).offset());
+    }
+
+    @Test
+    public void testKeyOrderAcrossWorkers() throws InterruptedException {
+        Map<String, String> workerOfKey = new ConcurrentHashMap<>();
+        List<Object> keyedEvents = Collections.synchronizedList(new ArrayList<>());
+        recordProcessor = new ParallelRecordProcessor(event -> {
+            String key = ((String) event).split(":")[0];
+            String worker = workerOfKey.putIfAbsent(key, Thread.currentThread().getName());
+            assertTrue("Key " + key + " is processed by more than one worker",
+                    null == worker || worker.equals(Thread.currentThread().getName()));
+            keyedEvents.add(event);
+        }, new TopicOffsetTable(), consumerOptions(4, 1024, true), new KafkaSourceMetrics());
+        recordProcessor.start(executorService);
+        // Records of eight keys interleaved within a single partition
+        List<ConsumerRecord<Object, Object>> partitionRecords = new ArrayList<>();
+        for (long offset = 0; offset < 800; offset++) {
+            String key = "key" + (offset % 8);
+            partitionRecords.add(new ConsumerRecord<>(TOPIC, 0, offset, key, key + ":" + offset));
+        }
+        assertTrue(recordProcessor.offer(new ConsumerRecords<>(Collections.singletonMap(
+                new TopicPartition(TOPIC, 0), partitionRecords))));
+        assertTrue(recordProcessor.awaitProcessed(10000));
+
+        assertEquals(800, keyedEvents.size());
+        assertTrue("Keys are not spread over the workers", new HashSet<>(workerOfKey.values()).size() > 1);
+        events.addAll(keyedEvents);
+        for (int i = 0; i < 8; i++) {
+            assertInOrder("key" + i + ":");
+        }
+        assertEquals(800, recordProcessor.committableOffsets().get(new TopicPartition(TOPIC, 0)).offset());
+    }
+
+    @Test
+    public void testPausedWorkersResume() throws InterruptedException {
+        recordProcessor = new ParallelRecordProcessor(sourceEventListener, new TopicOffsetTable(),
+                consumerOptions(2, 1024, false), new KafkaSourceMetrics());
+        recordProcessor.pause();
+        recordProcessor.start(executorService);
+        TopicPartition partition = new TopicPartition(TOPIC, 0);
+        assertTrue(recordProcessor.offer(new ConsumerRecords<>(Collections.singletonMap(partition,
+                records(0, null, 0, 10)))));
+        Thread.sleep(100);
+        assertEquals(0, events.size());
+
+        recordProcessor.resume();
+        assertTrue(recordProcessor.awaitProcessed(10000));
+        assertEquals(10, events.size());
+        // Idle workers are woken up for each poll handed over
+        for (int poll = 1; poll < 100; poll++) {
+            assertTrue(recordProcessor.offer(new ConsumerRecords<>(Collections.singletonMap(partition,
+                    records(0, null, poll * 10, 10)))));
+            assertTrue(recordProcessor.awaitProcessed(10000));
+        }
+        assertEquals(1000, events.size());
+        assertInOrder("0:");
+    }
+
+    static ConsumerOptions consumerOptions(int workerCount, int workerBufferSize, boolean keyedSharding) {
+        ConsumerOptions consumerOptions = new ConsumerOptions();
+        consumerOptions.setWorkerCount(workerCount);
+        consumerOptions.setWorkerBufferSize(workerBufferSize);
+        consumerOptions.setKeyedSharding(keyedSharding);
+        consumerOptions.setBatchMaxSize(1);
+        return consumerOptions;
+    }
+
+    /**
+     * @return records with the values 'partition:offset', or 'key:offset' when a key is given
+     */
+    static List<ConsumerRecord<Object, Object>> records(int partition, String key, long fromOffset, int count) {
+        List<ConsumerRecord<Object, Object>> records = new ArrayList<>();
+        for (long offset = fromOffset; offset < fromOffset + count; offset++) {
+            records.add(new ConsumerRecord<>(TOPIC, partition, offset, key,
+                    (null == key ? String.valueOf(partition) : key) + ":" + offset));
+        }
+        return records;
+    }
+
+    private void assertInOrder(String prefix) {
+        long lastOffset = -1;
+        synchronized (events) {
+            for (Object event : events) {
+                String value = (String) event;
+                if (value.startsWith(prefix)) {
+                    long offset = Long.parseLong(value.substring(prefix.length()));
+                    assertTrue("Event " + value + " is out of order", offset > lastOffset);
+                    lastOffset = offset;
+                }
+            }
+        }
+    }
+
+    private static void waitFor(BooleanSupplier condition) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + 10000;
+        while (!condition.getAsBoolean()) {
+            assertTrue("Timed out", System.currentTimeMillis() < deadline);
+            Thread.sleep(1);
+        }
+    }
+}
@@ -0,0 +1,104 @@
+/*
+ * Copyright (c) 2017, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ * WSO2 Inc. licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.wso2.siddhi.extension.input.transport.kafka;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class PartitionOffsetTrackerTestCase {
+    private static final String TOPIC = "kafka_topic";
+    private final TopicOffsetTable topicOffsetTable = new TopicOffsetTable();
+
+    @Test
+    public void testOutOfOrderCompletion() {
+        PartitionOffsetTracker offsetTracker = new PartitionOffsetTracker(TOPIC, 0, topicOffsetTable, 16);
+        assertEquals(-1, offsetTracker.committableOffset());
+        long sequences[] = new long[5];
+        for (int i = 0; i < 5; i++) {
+            sequences[i] = dispatch(offsetTracker, 10 + i);
+        }
+        assertEquals(10, offsetTracker.committableOffset());
+        // Completing later offsets first never moves the committable offset past an in-flight one
+        offsetTracker.completed(sequences[4]);
+        offsetTracker.completed(sequences[2]);
+        offsetTracker.completed(sequences[3]);
+        assertEquals(10, offsetTracker.committableOffset());
+        assertEquals(TopicOffsetTable.NO_OFFSET, topicOffsetTable.get(TOPIC, 0));
+        offsetTracker.completed(sequences[0]);
+        assertEquals(11, offsetTracker.committableOffset());
+        assertEquals(10, topicOffsetTable.get(TOPIC, 0));
+        assertFalse(offsetTracker.isIdle());
+        offsetTracker.completed(sequences[1]);
+        assertEquals(15, offsetTracker.committableOffset());
+        // The processed offsets are published without a commit, for snapshots to pick them up
+        assertEquals(14, topicOffsetTable.get(TOPIC, 0));
+        assertTrue(offsetTracker.isIdle());
+    }
+
+    @Test
+    public void testCancelledDispatch() {
+        PartitionOffsetTracker offsetTracker = new PartitionOffsetTracker(TOPIC, 0, topicOffsetTable, 16);
+        long sequence = dispatch(offsetTracker, 0);
+        // A record a worker did not accept is handed over again later, hence it does not count as dispatched
+        long cancelledSequence = offsetTracker.dispatching(1);
+        assertEquals(0, offsetTracker.committableOffset());
+        offsetTracker.completed(sequence);
+        assertEquals(1, offsetTracker.committableOffset());
+        assertTrue(offsetTracker.isIdle());
+        assertEquals(cancelledSequence, offsetTracker.dispatching(1));
+    }
+
+    @Test
+    public void testOffsetGapsAndSlotReuse() {
+        PartitionOffsetTracker offsetTracker = new PartitionOffsetTracker(TOPIC, 0, topicOffsetTable, 4);
+        // Compacted topics have gaps between the offsets, which do not hold back the committable offset
+        long offset = 0;
+        for (int i = 0; i < 100; i++) {
+            long first = dispatch(offsetTracker, offset);
+            long second = dispatch(offsetTracker, offset + 5);
+            assertEquals(offset, offsetTracker.committableOffset());
+            offsetTracker.completed(second);
+            offsetTracker.completed(first);
+            assertEquals(offset + 6, offsetTracker.committableOffset());
+            assertEquals(offset + 5, topicOffsetTable.get(TOPIC, 0));
+            offset += 10;
+        }
+    }
+
+    @Test
+    public void testFullTracker() {
+        PartitionOffsetTracker offsetTracker = new PartitionOffsetTracker(TOPIC, 0, topicOffsetTable, 3);
+        long first = dispatch(offsetTracker, 0);
+        dispatch(offsetTracker, 1);
+        dispatch(offsetTracker, 2);
+        assertEquals(PartitionOffsetTracker.NO_SEQUENCE, offsetTracker.dispatching(3));
+        offsetTracker.completed(first);
+        assertTrue(PartitionOffsetTracker.NO_SEQUENCE != dispatch(offsetTracker, 3));
+        assertEquals(1, offsetTracker.committableOffset());
+    }
+
+    private static long dispatch(PartitionOffsetTracker offsetTracker, long offset) {
+        long sequence = offsetTracker.dispatching(offset);
+        offsetTracker.dispatched(sequence);
+        return sequence;
+    }
+}
@@ -0,0 +1,112 @@
+/*
+ * Copyright (c) 2017, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ * WSO2 Inc. licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.wso2.siddhi.extension.input.transport.kafka;
+
+import org.apache.kafka.clients.consumer.ConsumerRecords;
+import org.apache.kafka.common.TopicPartition;
+import org.junit.After;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class PipelinedRecordProcessorTestCase {
+    private static final String TOPIC = "kafka_topic";
+    private final List<Object> events = Collections.synchronizedList(new ArrayList<>());
+    private final ExecutorService executorService = Executors.newCachedThreadPool();
+    private PipelinedRecordProcessor recordProcessor;
+
+    @After
+    public void tearDown() {
+        if (null != recordProcessor) {
+            recordProcessor.shutdown();
+        }
+        executorService.shutdownNow();
+    }
+
+    @Test
+    public void testPollsProcessedInOrder() {
+        recordProcessor = recordProcessor(4);
+        recordProcessor.start(executorService);
+        for (int poll = 0; poll < 3; poll++) {
+            assertTrue(recordProcessor.offer(poll(poll * 10, 10)));
+        }
+        assertTrue(recordProcessor.awaitProcessed(10000));
+
+        assertEquals(30, events.size());
+        for (int i = 0; i < 30; i++) {
+            assertEquals("0:" + i, events.get(i));
+        }
+        assertEquals(30, recordProcessor.committableOffsets().get(new TopicPartition(TOPIC, 0)).offset());
+    }
+
+    @Test
+    public void testFullBufferKeepsPollPending() {
+        recordProcessor = recordProcessor(1);
+        // The processor is not started yet, hence only the first poll fits into the buffer
+        assertTrue(recordProcessor.offer(poll(0, 10)));
+        assertFalse(recordProcessor.offer(poll(10, 10)));
+        assertFalse(recordProcessor.flush());
+        assertFalse(recordProcessor.awaitProcessed(50));
+
+        recordProcessor.start(executorService);
+        // Waiting hands the pending poll over once the processor took the first one
+        assertTrue(recordProcessor.awaitProcessed(10000));
+        assertEquals(20, events.size());
+        assertTrue(recordProcessor.flush());
+    }
+
+    @Test
+    public void testPausedProcessorResumes() throws InterruptedException {
+        recordProcessor = recordProcessor(4);
+        recordProcessor.pause();
+        recordProcessor.start(executorService);
+        assertTrue(recordProcessor.offer(poll(0, 10)));
+        Thread.sleep(100);
+        assertEquals(0, events.size());
+
+        recordProcessor.resume();
+        assertTrue(recordProcessor.awaitProcessed(10000));
+        assertEquals(10, events.size());
+        // An idle processor is woken up for each poll handed over
+        for (int poll = 1; poll < 100; poll++) {
+            assertTrue(recordProcessor.offer(poll(poll * 10, 10)));
+            assertTrue(recordProcessor.awaitProcessed(10000));
+        }
+        assertEquals(1000, events.size());
+    }
+
+    private PipelinedRecordProcessor recordProcessor(int bufferSize) {
+        RecordDispatcher recordDispatcher = new RecordDispatcher(events::add, new TopicOffsetTable(), false, 1,
+                RecordFraming.NONE, new KafkaSourceMetrics());
+        return new PipelinedRecordProcessor(recordDispatcher, new String[]{TOPIC}, bufferSize);
+    }
+
+    private static ConsumerRecords<Object, Object> poll(long fromOffset, int count) {
+        return new ConsumerRecords<>(Collections.singletonMap(new TopicPartition(TOPIC, 0),
+                ParallelRecordProcessorTestCase.records(0, null, fromOffset, count)));
+    }
+}
@@ -0,0 +1,130 @@
+/*
+ * Copyright (c) 2017, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ * WSO2 Inc. licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.wso2.siddhi.extension.input.transport.kafka;
+
+import org.apache.kafka.clients.consumer.ConsumerRecord;
+import org.apache.kafka.clients.consumer.ConsumerRecords;
+import org.apache.kafka.common.TopicPartition;
+import org.junit.Test;
+import org.wso2.siddhi.core.stream.input.source.SourceEventListener;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+
+public class RecordDispatcherTestCase {
+    private static final String TOPIC = "kafka_topic";
+    private final TopicOffsetTable topicOffsetTable = new TopicOffsetTable();
+    private final List<Object> events = new ArrayList<>();
+
+    @Test
+    public void testBatchDeliveryOrder() {
+        RecordDispatcher recordDispatcher = new RecordDispatcher(events::add, topicOffsetTable, true, 100,
+                RecordFraming.NONE, new KafkaSourceMetrics());
+        Map<TopicPartition, List<ConsumerRecord<Object, Object>>> records = new LinkedHashMap<>();
+        records.put(new TopicPartition(TOPIC, 0), ParallelRecordProcessorTestCase.records(0, null, 0, 150));
+        records.put(new TopicPartition(TOPIC, 1), ParallelRecordProcessorTestCase.records(1, null, 0, 100));
+        recordDispatcher.dispatch(new ConsumerRecords<>(records));
+
+        // The records of a poll are handed over in arrays of at most the batch size, in the order of the poll
+        assertEquals(3, events.size());
+        assertEquals(100, ((Object[]) events.get(0)).length);
+        assertEquals(100, ((Object[]) events.get(1)).length);
+        assertEquals(50, ((Object[]) events.get(2)).length);
+        List<Object> delivered = new ArrayList<>();
+        for (Object event : events) {
+            for (Object value : (Object[]) event) {
+                delivered.add(value);
+            }
+        }
+        List<Object> expected = new ArrayList<>();
+        for (ConsumerRecord<Object, Object> record : new ConsumerRecords<>(records)) {
+            expected.add(record.value());
+        }
+        assertEquals(expected, delivered);
+    }
+
+    @Test
+    public void testSingleEventDelivery() {
+        RecordDispatcher recordDispatcher = new RecordDispatcher(events::add, topicOffsetTable, false, 100,
+                RecordFraming.NONE, new KafkaSourceMetrics());
+        recordDispatcher.dispatch(records(0, 0, 5));
+        assertEquals(5, events.size());
+        for (int i = 0; i < 5; i++) {
+            assertEquals("0:" + i, events.get(i));
+        }
+        assertEquals(Long.valueOf(4), topicOffsetTable.getOffsets(TOPIC).get(0));
+    }
+
+    @Test
+    public void testOffsetsStoredAfterDelivery() {
+        List<Long> offsetsAtDelivery = new ArrayList<>();
+        SourceEventListener sourceEventListener = event -> {
+            events.add(event);
+            offsetsAtDelivery.add(topicOffsetTable.get(TOPIC, 0));
+        };
+        RecordDispatcher recordDispatcher = new RecordDispatcher(sourceEventListener, topicOffsetTable, true, 4,
+                RecordFraming.NONE, new KafkaSourceMetrics());
+        recordDispatcher.dispatch(records(0, 10, 10));
+
+        // A snapshot taken while siddhi processes a batch must not cover the records of the batch
+        assertEquals(3, events.size());
+        assertEquals(Long.valueOf(TopicOffsetTable.NO_OFFSET), offsetsAtDelivery.get(0));
+        assertEquals(Long.valueOf(13), offsetsAtDelivery.get(1));
+        assertEquals(Long.valueOf(17), offsetsAtDelivery.get(2));
+        assertEquals(Long.valueOf(19), topicOffsetTable.getOffsets(TOPIC).get(0));
+        // The committed offset is the one of the next record to consume
+        assertEquals(20, recordDispatcher.processedOffsets(new String[]{TOPIC}).get(new TopicPartition(TOPIC, 0))
+                .offset());
+    }
+
+    @Test
+    public void testBinaryValuesPassedAsIs() {
+        byte[][] values = {{1, 2, 3}, {}, {(byte) 0xff}};
+        Map<TopicPartition, List<ConsumerRecord<Object, Object>>> records = new LinkedHashMap<>();
+        List<ConsumerRecord<Object, Object>> partitionRecords = new ArrayList<>();
+        for (int i = 0; i < values.length; i++) {
+            partitionRecords.add(new ConsumerRecord<>(TOPIC, 0, i, null, values[i]));
+        }
+        records.put(new TopicPartition(TOPIC, 0), partitionRecords);
+        new RecordDispatcher(events::add, topicOffsetTable, false, 100, RecordFraming.NONE, new KafkaSourceMetrics())
+                .dispatch(new ConsumerRecords<>(records));
+        new RecordDispatcher(events::add, topicOffsetTable, true, 100, RecordFraming.NONE, new KafkaSourceMetrics())
+                .dispatch(new ConsumerRecords<>(records));
+
+        // The deserialized byte arrays reach the mapper without being copied or decoded
+        assertEquals(values.length + 1, events.size());
+        Object[] batch = (Object[]) events.get(values.length);
+        for (int i = 0; i < values.length; i++) {
+            assertSame(values[i], events.get(i));
+            assertSame(values[i], batch[i]);
+        }
+    }
+
+    private static ConsumerRecords<Object, Object> records(int partition, long fromOffset, int count) {
+        Map<TopicPartition, List<ConsumerRecord<Object, Object>>> records = new LinkedHashMap<>();
+        records.put(new TopicPartition(TOPIC, partition),
+                ParallelRecordProcessorTestCase.records(partition, null, fromOffset, count));
+        return new ConsumerRecords<>(records);
+    }
+}
@@ -0,0 +1,67 @@
+/*
+ * Copyright (c) 2017, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ * WSO2 Inc. licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.wso2.siddhi.extension.input.transport.kafka;
+
+import org.junit.Test;
+
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+
+public class RecordFramingTestCase {
+
+    @Test
+    public void testNoFraming() {
+        List<Object> events = RecordFraming.NONE.split("a,1\nb,2");
+        assertEquals(1, events.size());
+        assertEquals("a,1\nb,2", events.get(0));
+    }
+
+    @Test
+    public void testNewlineFraming() {
+        List<Object> events = RecordFraming.NEWLINE.split("a,1\nb,2\n\nc,3\n");
+        assertEquals(3, events.size());
+        assertEquals("a,1", events.get(0));
+        assertEquals("c,3", events.get(2));
+
+        events = RecordFraming.NEWLINE.split("a,1\nb,2".getBytes(StandardCharsets.UTF_8));
+        assertEquals(2, events.size());
+        assertArrayEquals("b,2".getBytes(StandardCharsets.UTF_8), (byte[]) events.get(1));
+    }
+
+    @Test
+    public void testLengthPrefixedFraming() {
+        byte[] record = new byte[]{0, 0, 0, 2, 'a', 'b', 0, 0, 0, 0, 0, 0, 0, 1, '\n'};
+        List<Object> events = RecordFraming.LENGTH_PREFIXED.split(record);
+        assertEquals(3, events.size());
+        assertArrayEquals(new byte[]{'a', 'b'}, (byte[]) events.get(0));
+        assertArrayEquals(new byte[0], (byte[]) events.get(1));
+        assertArrayEquals(new byte[]{'\n'}, (byte[]) events.get(2));
+    }
+
+    @Test
+    public void testMalformedLengthPrefixedFraming() {
+        byte[] record = new byte[]{0, 0, 0, 1, 'a', 0, 0, 0, 9, 'b'};
+        List<Object> events = RecordFraming.LENGTH_PREFIXED.split(record);
+        assertEquals(1, events.size());
+        assertArrayEquals(new byte[]{'a'}, (byte[]) events.get(0));
+    }
+}
@@ -0,0 +1,77 @@
+/*
+ * Copyright (c) 2017, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ * WSO2 Inc. licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.wso2.siddhi.extension.input.transport.kafka;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+public class SpscRingBufferTestCase {
+
+    @Test
+    public void testCapacityAndOrder() {
+        SpscRingBuffer<Integer> ringBuffer = new SpscRingBuffer<>(3);
+        assertTrue(ringBuffer.isEmpty());
+        assertNull(ringBuffer.poll());
+        // The capacity is rounded up to a power of two
+        for (int i = 0; i < 4; i++) {
+            assertTrue(ringBuffer.offer(i));
+        }
+        assertFalse(ringBuffer.offer(4));
+        assertEquals(0, (int) ringBuffer.poll());
+        assertTrue(ringBuffer.offer(4));
+        for (int i = 1; i <= 4; i++) {
+            assertEquals(i, (int) ringBuffer.poll());
+        }
+        assertTrue(ringBuffer.isEmpty());
+
+        ringBuffer.offer(5);
+        ringBuffer.offer(6);
+        ringBuffer.clear();
+        assertTrue(ringBuffer.isEmpty());
+        assertNull(ringBuffer.poll());
+    }
+
+    @Test
+    public void testConcurrentHandOver() throws InterruptedException {
+        final int count = 100000;
+        SpscRingBuffer<Integer> ringBuffer = new SpscRingBuffer<>(64);
+        Thread producer = new Thread(() -> {
+            for (int i = 0; i < count; i++) {
+                while (!ringBuffer.offer(i)) {
+                    Thread.yield();
+                }
+            }
+        });
+        producer.start();
+        int expected = 0;
+        long deadline = System.currentTimeMillis() + 30000;
+        while (expected < count && System.currentTimeMillis() < deadline) {
+            Integer element = ringBuffer.poll();
+            if (null != element) {
+                assertEquals(expected++, (int) element);
+            }
+        }
+        producer.join();
+        assertEquals(count, expected);
+    }
+}
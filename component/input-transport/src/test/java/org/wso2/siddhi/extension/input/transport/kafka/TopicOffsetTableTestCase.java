@@ -0,0 +1,103 @@
+/*
+ * Copyright (c) 2017, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ * WSO2 Inc. licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.wso2.siddhi.extension.input.transport.kafka;
+
+import org.junit.Test;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class TopicOffsetTableTestCase {
+
+    @Test
+    public void testUpdateAndSnapshot() {
+        TopicOffsetTable topicOffsetTable = new TopicOffsetTable();
+        assertEquals(TopicOffsetTable.NO_OFFSET, topicOffsetTable.get("kafka_topic", 0));
+        topicOffsetTable.update("kafka_topic", 0, 10);
+        topicOffsetTable.update("kafka_topic", 0, 11);
+        topicOffsetTable.update("kafka_topic", 130, 5);
+        topicOffsetTable.update("kafka_topic2", 1, 0);
+        assertEquals(11, topicOffsetTable.get("kafka_topic", 0));
+        assertEquals(5, topicOffsetTable.get("kafka_topic", 130));
+        assertEquals(TopicOffsetTable.NO_OFFSET, topicOffsetTable.get("kafka_topic", 1));
+
+        Map<String, Map<Integer, Long>> snapshot = topicOffsetTable.snapshot();
+        assertEquals(2, snapshot.size());
+        assertEquals(2, snapshot.get("kafka_topic").size());
+        assertEquals(Long.valueOf(11), snapshot.get("kafka_topic").get(0));
+        assertEquals(Long.valueOf(5), snapshot.get("kafka_topic").get(130));
+        assertEquals(Long.valueOf(0), snapshot.get("kafka_topic2").get(1));
+    }
+
+    @Test
+    public void testAdvanceOnlyMovesForward() {
+        TopicOffsetTable topicOffsetTable = new TopicOffsetTable();
+        topicOffsetTable.advance("kafka_topic", 0, 10);
+        topicOffsetTable.advance("kafka_topic", 0, 7);
+        assertEquals(10, topicOffsetTable.get("kafka_topic", 0));
+        topicOffsetTable.advance("kafka_topic", 0, 12);
+        assertEquals(12, topicOffsetTable.get("kafka_topic", 0));
+        // Restoring rewinds the offsets, from where they advance again
+        topicOffsetTable.update("kafka_topic", 0, 3);
+        topicOffsetTable.advance("kafka_topic", 0, 4);
+        assertEquals(4, topicOffsetTable.get("kafka_topic", 0));
+    }
+
+    @Test
+    public void testRestore() {
+        Map<Integer, Long> offsets = new HashMap<>();
+        offsets.put(0, 20L);
+        offsets.put(3, 7L);
+        Map<String, Map<Integer, Long>> topicOffsetMap = new HashMap<>();
+        topicOffsetMap.put("kafka_topic", offsets);
+
+        TopicOffsetTable topicOffsetTable = new TopicOffsetTable();
+        topicOffsetTable.update("kafka_topic", 0, 50);
+        topicOffsetTable.restore(topicOffsetMap);
+        assertEquals(20, topicOffsetTable.get("kafka_topic", 0));
+        assertEquals(7, topicOffsetTable.get("kafka_topic", 3));
+        assertEquals(topicOffsetMap, topicOffsetTable.snapshot());
+    }
+
+    @Test
+    public void testConcurrentUpdates() throws InterruptedException {
+        TopicOffsetTable topicOffsetTable = new TopicOffsetTable();
+        int partitions = 256;
+        ExecutorService executorService = Executors.newFixedThreadPool(8);
+        for (int i = 0; i < partitions; i++) {
+            int partition = i;
+            executorService.submit(() -> {
+                for (long offset = 0; offset < 1000; offset++) {
+                    topicOffsetTable.update("kafka_topic", partition, offset);
+                }
+            });
+        }
+        executorService.shutdown();
+        assertTrue(executorService.awaitTermination(30, TimeUnit.SECONDS));
+        for (int i = 0; i < partitions; i++) {
+            assertEquals(999, topicOffsetTable.get("kafka_topic", i));
+        }
+    }
+}
@@ -0,0 +1,89 @@
+/*
+ * Copyright (c) 2017, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ * WSO2 Inc. licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.wso2.siddhi.extension.output.transport.kafka;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.OperatingSystemMXBean;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.DoubleSupplier;
+
+/**
+ * Picks the compression codec of the producer in the 'auto' compression mode. The sink starts with lz4, which is the
+ * cheapest codec, and samples the size of the published payloads. Once enough payloads are sampled, gzip is chosen
+ * for large payloads when the CPU has headroom to spare, lz4 when the CPU is busy, and snappy otherwise.
+ */
+class CompressionSelector {
+    static final String INITIAL_CODEC = "lz4";
+    static final int SAMPLE_SIZE = 1000;
+    static final int LARGE_PAYLOAD_SIZE = 1024;
+    static final double MIN_CPU_HEADROOM = 0.25;
+    static final double HIGH_CPU_HEADROOM = 0.5;
+    private static final OperatingSystemMXBean OPERATING_SYSTEM_MX_BEAN = ManagementFactory.getOperatingSystemMXBean();
+    private final AtomicInteger sampledRecords = new AtomicInteger();
+    private final AtomicLong sampledBytes = new AtomicLong();
+    private final AtomicBoolean decided = new AtomicBoolean();
+    private final DoubleSupplier cpuHeadroom;
+
+    CompressionSelector() {
+        this(CompressionSelector::systemCpuHeadroom);
+    }
+
+    /**
+     * @param cpuHeadroom fraction of the CPU which is idle, between 0 and 1
+     */
+    CompressionSelector(DoubleSupplier cpuHeadroom) {
+        this.cpuHeadroom = cpuHeadroom;
+    }
+
+    /**
+     * Samples a published payload.
+     *
+     * @param payloadSize size of the payload in bytes
+     * @return the codec to switch to once sampling completes, null while sampling and afterwards
+     */
+    String sample(int payloadSize) {
+        if (decided.get()) {
+            return null;
+        }
+        sampledBytes.addAndGet(payloadSize);
+        if (sampledRecords.incrementAndGet() < SAMPLE_SIZE || !decided.compareAndSet(false, true)) {
+            return null;
+        }
+        long averagePayloadSize = sampledBytes.get() / sampledRecords.get();
+        double headroom = cpuHeadroom.getAsDouble();
+        if (headroom < MIN_CPU_HEADROOM) {
+            return INITIAL_CODEC;
+        } else if (averagePayloadSize >= LARGE_PAYLOAD_SIZE && headroom >= HIGH_CPU_HEADROOM) {
+            return "gzip";
+        } else {
+            return "snappy";
+        }
+    }
+
+    private static double systemCpuHeadroom() {
+        double loadAverage = OPERATING_SYSTEM_MX_BEAN.getSystemLoadAverage();
+        if (loadAverage < 0) {
+            // Load average is not available on this platform
+            return HIGH_CPU_HEADROOM;
+        }
+        return Math.max(0, 1 - loadAverage / OPERATING_SYSTEM_MX_BEAN.getAvailableProcessors());
+    }
+}
@@ -0,0 +1,122 @@
+/*
+ * Copyright (c) 2017, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ * WSO2 Inc. licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.wso2.siddhi.extension.output.transport.kafka;
+
+import org.apache.kafka.clients.producer.KafkaProducer;
+import org.apache.kafka.clients.producer.Producer;
+import org.apache.log4j.Logger;
+
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.Map;
+import java.util.Properties;
+import java.util.TreeMap;
+import java.util.function.Function;
+
+/**
+ * Shares Kafka producers among the Kafka sinks of a JVM. Sinks with the same producer configurations get the same
+ * producer, which is closed once the last sink using it releases it. A producer is thread safe and sends the
+ * records of all sinks through a single sender thread, buffer and set of broker connections.
+ * <p>
+ * As the producer is shared, a sink releasing it only flushes it, which also waits for the records the other sinks
+ * sent, and a sink flushing it on a snapshot waits for them as well. Sinks only use the pool when sharing is enabled
+ * for them.
+ */
+final class KafkaProducerPool {
+    private static final Logger LOG = Logger.getLogger(KafkaProducerPool.class);
+    private static final Map<String, PooledProducer> PRODUCERS = new HashMap<>();
+    private static final Map<Producer<?, ?>, PooledProducer> POOLED_PRODUCERS = new IdentityHashMap<>();
+    private static Function<Properties, Producer<?, ?>> producerFactory = KafkaProducer::new;
+
+    private KafkaProducerPool() {
+    }
+
+    /**
+     * @return a producer for the given configurations, shared with the sinks which acquired it with the same
+     * configurations
+     */
+    @SuppressWarnings("unchecked")
+    static synchronized <K, V> Producer<K, V> acquire(Properties props) {
+        String key = normalize(props);
+        PooledProducer pooledProducer = PRODUCERS.get(key);
+        if (null == pooledProducer) {
+            pooledProducer = new PooledProducer(key, producerFactory.apply(props));
+            PRODUCERS.put(key, pooledProducer);
+            POOLED_PRODUCERS.put(pooledProducer.producer, pooledProducer);
+        } else if (LOG.isDebugEnabled()) {
+            LOG.debug("Sharing the Kafka producer of " + pooledProducer.references + " sink/s.");
+        }
+        pooledProducer.references++;
+        return (Producer<K, V>) pooledProducer.producer;
+    }
+
+    /**
+     * Releases a producer acquired from the pool, closing it if no other sink uses it.
+     */
+    static void release(Producer<?, ?> producer) {
+        Producer<?, ?> unusedProducer = null;
+        synchronized (KafkaProducerPool.class) {
+            PooledProducer pooledProducer = POOLED_PRODUCERS.get(producer);
+            if (null == pooledProducer) {
+                unusedProducer = producer;
+            } else if (--pooledProducer.references == 0) {
+                PRODUCERS.remove(pooledProducer.key);
+                POOLED_PRODUCERS.remove(producer);
+                unusedProducer = producer;
+            }
+        }
+        // Closing waits for the pending records to be sent, hence it is done without holding the pool
+        if (null != unusedProducer) {
+            unusedProducer.close();
+        }
+    }
+
+    /**
+     * Replaces the way producers are created, such as with mock producers in benchmarks.
+     */
+    static synchronized void setProducerFactory(Function<Properties, Producer<?, ?>> producerFactory) {
+        KafkaProducerPool.producerFactory = producerFactory;
+    }
+
+    /**
+     * @return the configurations in a form which is the same for equal configurations, regardless of their order
+     * and of whether values are given as Strings or as numbers
+     */
+    private static String normalize(Properties props) {
+        Map<String, String> sortedProps = new TreeMap<>();
+        for (Map.Entry<Object, Object> entry : props.entrySet()) {
+            sortedProps.put(String.valueOf(entry.getKey()), String.valueOf(entry.getValue()));
+        }
+        return sortedProps.toString();
+    }
+
+    /**
+     * Producer in the pool with the number of sinks using it.
+     */
+    private static class PooledProducer {
+        private final String key;
+        private final Producer<?, ?> producer;
+        private int references;
+
+        PooledProducer(String key, Producer<?, ?> producer) {
+            this.key = key;
+            this.producer = producer;
+        }
+    }
+}
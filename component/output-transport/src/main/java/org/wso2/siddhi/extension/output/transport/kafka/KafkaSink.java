@@ -18,24 +18,40 @@
 
 package org.wso2.siddhi.extension.output.transport.kafka;
 
+import org.apache.kafka.clients.producer.Callback;
 import org.apache.kafka.clients.producer.KafkaProducer;
 import org.apache.kafka.clients.producer.Producer;
 import org.apache.kafka.clients.producer.ProducerRecord;
+import org.apache.kafka.clients.producer.RecordMetadata;
+import org.apache.kafka.common.KafkaException;
+import org.apache.kafka.common.errors.RetriableException;
 import org.apache.log4j.Logger;
 import org.wso2.siddhi.annotation.Example;
 import org.wso2.siddhi.annotation.Extension;
 import org.wso2.siddhi.core.config.ExecutionPlanContext;
 import org.wso2.siddhi.core.exception.ConnectionUnavailableException;
+import org.wso2.siddhi.core.exception.ExecutionPlanRuntimeException;
 import org.wso2.siddhi.core.stream.output.sink.Sink;
 import org.wso2.siddhi.core.util.config.ConfigReader;
 import org.wso2.siddhi.core.util.transport.DynamicOptions;
 import org.wso2.siddhi.core.util.transport.Option;
 import org.wso2.siddhi.core.util.transport.OptionHolder;
 import org.wso2.siddhi.query.api.definition.StreamDefinition;
+import org.wso2.siddhi.query.api.exception.ExecutionPlanValidationException;
 
+import java.nio.charset.StandardCharsets;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
 import java.util.Map;
 import java.util.Properties;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
 import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
 
 /**
  * Kafka output transport class.
@@ -49,11 +65,45 @@ import java.util.concurrent.ScheduledExecutorService;
 public class KafkaSink extends Sink {
 
     private ScheduledExecutorService executorService;
-    private Producer<String, String>  producer;
-    private Option topicOption = null;
+    private volatile Producer<String, byte[]> producer;
     private String kafkaConnect;
     private String optionalConfigs;
-    private Option partitionOption;
+    private RecordRouter recordRouter;
+    private Option keyOption;
+    private PartitionStrategy partitionStrategy;
+    private PublishWindow publishWindow;
+    private long publishWindowTimeout;
+    private ProducerProfile producerProfile;
+    // Producer configurations given as first class sink options, which override the profile
+    private final Properties producerOverrides = new Properties();
+    private String compressionType;
+    // Only set in the auto compression mode
+    private CompressionSelector compressionSelector;
+    // Switches the compression codec off the publishing threads, only set in the auto compression mode
+    private ExecutorService compressionExecutorService;
+    // When set, the producer is shared with the other sinks of the JVM having the same producer configurations. A
+    // flush of a shared producer, such as on snapshots and disconnect, also waits for the records of the other sinks,
+    // and the producer is only closed once the last sink using it disconnects, hence sharing is opted in
+    private boolean sharedProducer;
+    // Only set when events are aggregated into framed records
+    private RecordAggregator recordAggregator;
+    private long batchLingerTime;
+    private ScheduledFuture<?> lingerFuture;
+    private KafkaSinkMetrics sinkMetrics;
+    private String executionPlanName;
+    private String streamId;
+    // Only set when failed records are retried
+    private RetryQueue retryQueue;
+    private int retryMaxAttempts;
+    private long retryBackoff;
+    private ScheduledFuture<?> retryFuture;
+    private String deadLetterTopic;
+    // Only tracked with the at least once delivery guarantee
+    private boolean atLeastOnce;
+    private long snapshotFlushTimeout;
+    // Failed records counted when the execution plan was restored, any failure since then fails the snapshots
+    private volatile long failedCountAtSnapshot;
+    private final Map<String, Map<Integer, Long>> acknowledgedOffsets = new ConcurrentHashMap<>();
 
     private static final String KAFKA_PUBLISH_TOPIC = "topic";
     private static final String KAFKA_BROKER_LIST = "bootstrap.servers";
@@ -61,6 +111,51 @@ public class KafkaSink extends Sink {
     private static final String HEADER_SEPARATOR = ",";
     private static final String ENTRY_SEPARATOR = ":";
     private static final String KAFKA_PARTITION_NO = "partition.no";
+    private static final String KAFKA_KEY = "key";
+    private static final String KAFKA_PARTITIONER = "partitioner";
+    private static final String KAFKA_PARTITIONER_CLASS = "partitioner.class";
+    private static final String DELIVERY_GUARANTEE = "delivery.guarantee";
+    private static final String SNAPSHOT_FLUSH_TIMEOUT = "snapshot.flush.timeout.ms";
+    private static final String BEST_EFFORT_DELIVERY = "best.effort";
+    private static final String AT_LEAST_ONCE_DELIVERY = "at.least.once";
+    private static final String DEFAULT_SNAPSHOT_FLUSH_TIMEOUT = "30000";
+    private static final String ACKNOWLEDGED_OFFSETS = "acknowledged.offsets";
+    private static final String SHARED_PRODUCER = "shared.producer";
+    private static final String RETRY_MAX_ATTEMPTS = "retry.max.attempts";
+    private static final String RETRY_BACKOFF_MS = "retry.backoff.ms";
+    private static final String RETRY_BACKOFF_MAX_MS = "retry.backoff.max.ms";
+    private static final String RETRY_QUEUE_SIZE = "retry.queue.size";
+    private static final String DEAD_LETTER_TOPIC = "dead.letter.topic";
+    private static final String DEFAULT_RETRY_BACKOFF_MS = "100";
+    private static final String DEFAULT_RETRY_BACKOFF_MAX_MS = "10000";
+    private static final String DEFAULT_RETRY_QUEUE_SIZE = "10000";
+    private static final String KAFKA_MAX_IN_FLIGHT_RECORDS = "max.in.flight.records";
+    private static final String KAFKA_MAX_IN_FLIGHT_BYTES = "max.in.flight.bytes";
+    private static final String KAFKA_MAX_IN_FLIGHT_TIMEOUT_MS = "max.in.flight.timeout.ms";
+    private static final String DEFAULT_MAX_IN_FLIGHT_RECORDS = "10000";
+    // Kept below the producer buffer.memory, so that a full window blocks before the producer does
+    private static final String DEFAULT_MAX_IN_FLIGHT_BYTES = "16777216";
+    private static final String DEFAULT_MAX_IN_FLIGHT_TIMEOUT_MS = "10000";
+    private static final String KAFKA_PERFORMANCE_PROFILE = "performance.profile";
+    private static final String KAFKA_ACKS = "acks";
+    private static final String KAFKA_RETRIES = "retries";
+    private static final String KAFKA_BATCH_SIZE = "batch.size";
+    private static final String KAFKA_LINGER_MS = "linger.ms";
+    private static final String KAFKA_BUFFER_MEMORY = "buffer.memory";
+    private static final String KAFKA_COMPRESSION_TYPE = "compression.type";
+    private static final String AUTO_COMPRESSION = "auto";
+    private static final long COMPRESSION_SWITCH_TIMEOUT = 10000;
+    private static final long DEAD_LETTER_FLUSH_TIMEOUT = 5000;
+    private static final String RECORD_FRAMING = "record.framing";
+    private static final String BATCH_MAX_COUNT = "batch.max.count";
+    private static final String BATCH_MAX_BYTES = "batch.max.bytes";
+    private static final String BATCH_LINGER_MS = "batch.linger.ms";
+    private static final String NO_FRAMING = "none";
+    private static final String NEWLINE_FRAMING = "newline";
+    private static final String LENGTH_PREFIXED_FRAMING = "length.prefixed";
+    private static final String DEFAULT_BATCH_MAX_COUNT = "100";
+    private static final String DEFAULT_BATCH_MAX_BYTES = "65536";
+    private static final String DEFAULT_BATCH_LINGER_MS = "10";
 
     private static final Logger LOG = Logger.getLogger(KafkaSink.class);
 
@@ -69,22 +164,168 @@ public class KafkaSink extends Sink {
                         ConfigReader sinkConfigReader, ExecutionPlanContext executionPlanContext) {
         kafkaConnect = optionHolder.validateAndGetStaticValue(KAFKA_BROKER_LIST);
         optionalConfigs = optionHolder.validateAndGetStaticValue(KAFKA_OPTIONAL_CONFIGURATION_PROPERTIES, null);
-        topicOption = optionHolder.validateAndGetOption(KAFKA_PUBLISH_TOPIC);
-        partitionOption = optionHolder.getOrCreateOption(KAFKA_PARTITION_NO, null);
+        recordRouter = new RecordRouter(optionHolder.validateAndGetOption(KAFKA_PUBLISH_TOPIC),
+                optionHolder.getOrCreateOption(KAFKA_PARTITION_NO, null));
+        keyOption = optionHolder.getOrCreateOption(KAFKA_KEY, null);
+        partitionStrategy = PartitionStrategy.fromName(optionHolder.validateAndGetStaticValue(KAFKA_PARTITIONER,
+                "hash"));
+        if (null != partitionStrategy.getPartitionerClass()) {
+            producerOverrides.put(KAFKA_PARTITIONER_CLASS, partitionStrategy.getPartitionerClass().getName());
+        }
         executorService = executionPlanContext.getScheduledExecutorService();
+        publishWindow = new PublishWindow(
+                Integer.parseInt(optionHolder.validateAndGetStaticValue(KAFKA_MAX_IN_FLIGHT_RECORDS,
+                        DEFAULT_MAX_IN_FLIGHT_RECORDS)),
+                Integer.parseInt(optionHolder.validateAndGetStaticValue(KAFKA_MAX_IN_FLIGHT_BYTES,
+                        DEFAULT_MAX_IN_FLIGHT_BYTES)));
+        publishWindowTimeout = Long.parseLong(optionHolder.validateAndGetStaticValue(KAFKA_MAX_IN_FLIGHT_TIMEOUT_MS,
+                DEFAULT_MAX_IN_FLIGHT_TIMEOUT_MS));
+        sharedProducer = Boolean.parseBoolean(optionHolder.validateAndGetStaticValue(SHARED_PRODUCER, "false"));
+        sinkMetrics = new KafkaSinkMetrics(() -> producer, sharedProducer, publishWindow);
+        executionPlanName = executionPlanContext.getName();
+        streamId = outputStreamDefinition.getId();
+        producerProfile = ProducerProfile.fromName(optionHolder.validateAndGetStaticValue(KAFKA_PERFORMANCE_PROFILE,
+                "default"));
+        String acks = optionHolder.validateAndGetStaticValue(KAFKA_ACKS, null);
+        if (null != acks) {
+            if (!"all".equals(acks) && !"-1".equals(acks) && !"0".equals(acks) && !"1".equals(acks)) {
+                throw new ExecutionPlanValidationException("Unsupported value '" + acks + "' for option '"
+                        + KAFKA_ACKS + "' of Kafka sink. Supported values are 'all', '-1', '0' and '1'.");
+            }
+            producerOverrides.put(KAFKA_ACKS, acks);
+        }
+        for (String numericOption : new String[]{KAFKA_RETRIES, KAFKA_BATCH_SIZE, KAFKA_LINGER_MS,
+                KAFKA_BUFFER_MEMORY}) {
+            String value = optionHolder.validateAndGetStaticValue(numericOption, null);
+            if (null != value) {
+                producerOverrides.put(numericOption, validateNonNegative(numericOption, value));
+            }
+        }
+        compressionType = optionHolder.validateAndGetStaticValue(KAFKA_COMPRESSION_TYPE, null);
+        if (null != compressionType) {
+            compressionType = compressionType.trim().toLowerCase(Locale.ENGLISH);
+            switch (compressionType) {
+                case AUTO_COMPRESSION:
+                    compressionSelector = new CompressionSelector();
+                    producerOverrides.put(KAFKA_COMPRESSION_TYPE, CompressionSelector.INITIAL_CODEC);
+                    break;
+                case "none":
+                case "gzip":
+                case "snappy":
+                case "lz4":
+                    producerOverrides.put(KAFKA_COMPRESSION_TYPE, compressionType);
+                    break;
+                default:
+                    throw new ExecutionPlanValidationException("Unsupported value '" + compressionType
+                            + "' for option '" + KAFKA_COMPRESSION_TYPE + "' of Kafka sink. Supported values are "
+                            + "'none', 'gzip', 'snappy', 'lz4' and 'auto'.");
+            }
+        }
+        String recordFraming = optionHolder.validateAndGetStaticValue(RECORD_FRAMING, NO_FRAMING);
+        if (NEWLINE_FRAMING.equalsIgnoreCase(recordFraming) || LENGTH_PREFIXED_FRAMING.equalsIgnoreCase(
+                recordFraming)) {
+            batchLingerTime = Long.parseLong(optionHolder.validateAndGetStaticValue(BATCH_LINGER_MS,
+                    DEFAULT_BATCH_LINGER_MS));
+            recordAggregator = new RecordAggregator(LENGTH_PREFIXED_FRAMING.equalsIgnoreCase(recordFraming),
+                    Integer.parseInt(optionHolder.validateAndGetStaticValue(BATCH_MAX_COUNT,
+                            DEFAULT_BATCH_MAX_COUNT)),
+                    Integer.parseInt(optionHolder.validateAndGetStaticValue(BATCH_MAX_BYTES,
+                            DEFAULT_BATCH_MAX_BYTES)), batchLingerTime);
+        } else if (!NO_FRAMING.equalsIgnoreCase(recordFraming)) {
+            throw new ExecutionPlanValidationException("Unsupported value '" + recordFraming + "' for option '"
+                    + RECORD_FRAMING + "' of Kafka sink. Supported values are '" + NO_FRAMING + "', '"
+                    + NEWLINE_FRAMING + "' and '" + LENGTH_PREFIXED_FRAMING + "'.");
+        }
+        retryMaxAttempts = Integer.parseInt(optionHolder.validateAndGetStaticValue(RETRY_MAX_ATTEMPTS, "1"));
+        if (retryMaxAttempts > 1) {
+            retryBackoff = Math.max(1, Long.parseLong(optionHolder.validateAndGetStaticValue(RETRY_BACKOFF_MS,
+                    DEFAULT_RETRY_BACKOFF_MS)));
+            retryQueue = new RetryQueue(Integer.parseInt(optionHolder.validateAndGetStaticValue(RETRY_QUEUE_SIZE,
+                    DEFAULT_RETRY_QUEUE_SIZE)), retryBackoff, Long.parseLong(optionHolder.validateAndGetStaticValue(
+                    RETRY_BACKOFF_MAX_MS, DEFAULT_RETRY_BACKOFF_MAX_MS)));
+        }
+        deadLetterTopic = optionHolder.validateAndGetStaticValue(DEAD_LETTER_TOPIC, null);
+        String deliveryGuarantee = optionHolder.validateAndGetStaticValue(DELIVERY_GUARANTEE, BEST_EFFORT_DELIVERY);
+        if (AT_LEAST_ONCE_DELIVERY.equalsIgnoreCase(deliveryGuarantee)) {
+            atLeastOnce = true;
+            snapshotFlushTimeout = Long.parseLong(optionHolder.validateAndGetStaticValue(SNAPSHOT_FLUSH_TIMEOUT,
+                    DEFAULT_SNAPSHOT_FLUSH_TIMEOUT));
+            executionPlanContext.getSnapshotService().addSnapshotable("kafka-sink-" + outputStreamDefinition.getId(),
+                    this);
+        } else if (!BEST_EFFORT_DELIVERY.equalsIgnoreCase(deliveryGuarantee)) {
+            throw new ExecutionPlanValidationException("Unsupported value '" + deliveryGuarantee + "' for option '"
+                    + DELIVERY_GUARANTEE + "' of Kafka sink. Supported values are '" + BEST_EFFORT_DELIVERY
+                    + "' and '" + AT_LEAST_ONCE_DELIVERY + "'.");
+        }
+    }
+
+    static String validateNonNegative(String option, String value) {
+        try {
+            if (Long.parseLong(value.trim()) >= 0) {
+                // Passed on as a String, which the producer parses into the type of the configuration
+                return value.trim();
+            }
+        } catch (NumberFormatException e) {
+            // reported below
+        }
+        throw new ExecutionPlanValidationException("Option '" + option + "' of Kafka sink expects a non negative "
+                + "number, but found '" + value + "'.");
     }
 
     @Override
     public void connect() throws ConnectionUnavailableException {
+        producer = createProducer();
+        if (null != compressionSelector) {
+            compressionExecutorService = Executors.newSingleThreadExecutor(runnable -> {
+                Thread thread = new Thread(runnable, "KafkaSink-CompressionSwitch-" + executionPlanName + "-"
+                        + streamId);
+                thread.setDaemon(true);
+                return thread;
+            });
+        }
+        if (null != recordAggregator) {
+            // Batches older than the linger time are sent by a periodic task, so that quiet streams are not delayed
+            lingerFuture = executorService.scheduleWithFixedDelay(this::sendExpiredBatches, batchLingerTime,
+                    Math.max(1, batchLingerTime), TimeUnit.MILLISECONDS);
+        }
+        if (null != retryQueue) {
+            retryFuture = executorService.scheduleWithFixedDelay(this::retryFailedRecords, retryBackoff,
+                    retryBackoff, TimeUnit.MILLISECONDS);
+        }
+        if (null != deadLetterTopic) {
+            // Fetches the metadata of the dead letter topic up front, so that dead lettering a failed record does not
+            // wait for it
+            try {
+                producer.partitionsFor(deadLetterTopic);
+            } catch (KafkaException e) {
+                LOG.warn("Failed to fetch the metadata of dead letter topic " + deadLetterTopic + ". Error: "
+                        + e.getMessage(), e);
+            }
+        }
+        sinkMetrics.register(executionPlanName, streamId);
+        LOG.info("Kafka producer created.");
+    }
+
+    private Producer<String, byte[]> createProducer() {
+        Properties props = producerConfig(kafkaConnect, producerProfile, optionalConfigs, producerOverrides);
+        if (sharedProducer) {
+            return KafkaProducerPool.acquire(props);
+        }
+        return new KafkaProducer<>(props);
+    }
+
+    /**
+     * Builds the producer configuration, in which the optional configuration overrides the settings of the profile
+     * and the first class sink options override both.
+     */
+    static Properties producerConfig(String kafkaConnect, ProducerProfile producerProfile, String optionalConfigs,
+                                     Properties producerOverrides) {
         Properties props = new Properties();
         props.put("bootstrap.servers", kafkaConnect);
-        props.put("acks", "all");
-        props.put("retries", 0);
-        props.put("batch.size", 16384);
-        props.put("linger.ms", 1);
-        props.put("buffer.memory", 33554432);
+        producerProfile.apply(props);
         props.put("key.serializer", "org.apache.kafka.common.serialization.StringSerializer");
-        props.put("value.serializer", "org.apache.kafka.common.serialization.StringSerializer");
+        // Values are encoded by the sink, so that binary payloads and framed records are sent as they are
+        props.put("value.serializer", "org.apache.kafka.common.serialization.ByteArraySerializer");
 
         if (optionalConfigs != null) {
             String[] optionalProperties = optionalConfigs.split(HEADER_SEPARATOR);
@@ -99,32 +340,310 @@ public class KafkaSink extends Sink {
                 }
             }
         }
-        producer = new KafkaProducer<>(props);
-        LOG.info("Kafka producer created.");
+        props.putAll(producerOverrides);
+        return props;
+    }
+
+    private void releaseProducer(Producer<String, byte[]> producer) {
+        if (sharedProducer) {
+            // Other sinks might keep using the producer, hence only the pending records are sent here
+            producer.flush();
+            KafkaProducerPool.release(producer);
+        } else {
+            producer.close();
+        }
+    }
+
+    /**
+     * Replaces the producer with one using the given compression codec, on the compression executor as creating a
+     * producer blocks. Once replaced, the old producer is flushed so that the records sent through it are
+     * acknowledged, and then released. Records a publishing thread sends through the old producer while it closes
+     * are sent again through the new one.
+     */
+    private void switchCompression(String codec) {
+        String currentCodec = producerOverrides.getProperty(KAFKA_COMPRESSION_TYPE);
+        if (codec.equals(currentCodec)) {
+            LOG.info("Kafka sink keeps '" + codec + "' compression after sampling the published payloads.");
+            return;
+        }
+        producerOverrides.put(KAFKA_COMPRESSION_TYPE, codec);
+        Producer<String, byte[]> oldProducer = producer;
+        producer = createProducer();
+        oldProducer.flush();
+        releaseProducer(oldProducer);
+        LOG.info("Kafka sink switched from '" + currentCodec + "' to '" + codec + "' compression after sampling "
+                + "the published payloads.");
+    }
+
+    private void awaitCompressionSwitch() {
+        if (null == compressionExecutorService) {
+            return;
+        }
+        compressionExecutorService.shutdown();
+        try {
+            if (!compressionExecutorService.awaitTermination(COMPRESSION_SWITCH_TIMEOUT, TimeUnit.MILLISECONDS)) {
+                LOG.warn("Kafka sink did not complete switching the compression codec within "
+                        + COMPRESSION_SWITCH_TIMEOUT + " ms.");
+                compressionExecutorService.shutdownNow();
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        compressionExecutorService = null;
     }
 
     @Override
     public void publish(Object payload, DynamicOptions transportOptions) throws ConnectionUnavailableException {
-        String topic = topicOption.getValue(transportOptions);
-        String partitionNo = partitionOption.getValue(transportOptions);
+        PublishRoute route;
+        String key = keyOption.getValue(transportOptions);
         try {
-            if (null == partitionNo) {
-                producer.send(new ProducerRecord<>(topic, payload.toString()));
-            } else {
-                producer.send(new ProducerRecord<>(topic, partitionNo, payload.toString()));
+            route = recordRouter.route(transportOptions);
+        } catch (ExecutionPlanValidationException e) {
+            // Only dynamic partitions are parsed at this point, static ones are validated when initializing
+            sinkMetrics.rejected();
+            LOG.error("Failed to publish the message. Error: " + e.getMessage(), e);
+            return;
+        }
+        byte[] value = payload instanceof byte[] ? (byte[]) payload
+                : payload.toString().getBytes(StandardCharsets.UTF_8);
+        if (null != recordAggregator) {
+            if (!recordAggregator.canFrame(value)) {
+                // The event would be split into several events by the source, hence it is dropped as a whole
+                sinkMetrics.rejected();
+                LOG.error("Failed to publish the message to " + route + " as it contains a newline, which is not "
+                        + "supported by '" + NEWLINE_FRAMING + "' " + RECORD_FRAMING + ". Use '"
+                        + LENGTH_PREFIXED_FRAMING + "' " + RECORD_FRAMING + " for multi-line messages.");
+                return;
+            }
+            if (null != key && null == route.getPartition() && partitionStrategy.isKeyed()) {
+                // Aggregated records carry the events of many keys, hence the key only picks the partition
+                route = recordRouter.keyedRoute(route, key, producer);
+            }
+            sendBatches(recordAggregator.add(route, value, System.currentTimeMillis()));
+        } else {
+            send(route, key, value);
+        }
+    }
+
+    private void sendExpiredBatches() {
+        try {
+            sendBatches(recordAggregator.drainExpired(System.currentTimeMillis()));
+        } catch (Throwable t) {
+            // A failure must not cancel the scheduled task, which would leave batches unsent until disconnect
+            LOG.error("Failed to send the aggregated Kafka records.", t);
+        }
+    }
+
+    private void sendBatches(List<RecordAggregator.Batch> batches) throws ConnectionUnavailableException {
+        for (int i = 0; i < batches.size(); i++) {
+            RecordAggregator.Batch batch = batches.get(i);
+            try {
+                send(batch.getRoute(), null, batch.toByteArray());
+            } catch (ConnectionUnavailableException e) {
+                // The window is still full, hence the remaining batches would only time out one after the other
+                for (int j = i + 1; j < batches.size(); j++) {
+                    sinkMetrics.failed();
+                }
+                throw e;
+            }
+        }
+    }
+
+    private void send(PublishRoute route, String key, byte[] value) throws ConnectionUnavailableException {
+        int size = value.length;
+        if (null != compressionSelector) {
+            String codec = compressionSelector.sample(size);
+            if (null != codec) {
+                try {
+                    compressionExecutorService.execute(() -> switchCompression(codec));
+                } catch (RejectedExecutionException e) {
+                    LOG.warn("Kafka sink keeps its compression codec as it is disconnecting.");
+                }
+            }
+        }
+        if (!publishWindow.tryAcquire(size) && !awaitPublishWindow(route, size)) {
+            return;
+        }
+        try {
+            if (!recordRouter.validate(route, producer)) {
+                deadLetter(route, key, value, 1, new KafkaException("Topic does not have the partition."), true);
+                return;
+            }
+        } catch (Exception e) {
+            onFailure(route, key, value, 1, e);
+            return;
+        }
+        sendRecord(route, key, value, 1);
+    }
+
+    /**
+     * Waits for the publish window to take a record. A window which stays full means the brokers do not acknowledge
+     * the records, which is reported as an unavailable connection so that siddhi backs off from publishing.
+     *
+     * @return false if interrupted, in which case the record is dropped
+     */
+    private boolean awaitPublishWindow(PublishRoute route, int size) throws ConnectionUnavailableException {
+        long waitStart = System.nanoTime();
+        boolean acquired;
+        try {
+            acquired = publishWindow.tryAcquire(size, publishWindowTimeout);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            sinkMetrics.failed();
+            LOG.error("Interrupted while waiting to publish the message to " + route + ".", e);
+            return false;
+        }
+        sinkMetrics.waitedForWindow(System.nanoTime() - waitStart, !acquired);
+        if (!acquired) {
+            sinkMetrics.failed();
+            throw new ConnectionUnavailableException("Kafka sink could not publish the message to " + route + " as "
+                    + publishWindow.getInFlightRecords() + " records are not acknowledged by the brokers after "
+                    + publishWindowTimeout + " ms.");
+        }
+        return true;
+    }
+
+    /**
+     * Sends a record which holds its permits of the publish window. The permits are only released once the record
+     * is acknowledged, dead lettered or dropped, hence retries count towards the window as well.
+     */
+    private void sendRecord(PublishRoute route, String key, byte[] value, int attempt) {
+        Producer<String, byte[]> currentProducer = producer;
+        try {
+            long cpuTime = sinkMetrics.sampleCpuTime();
+            currentProducer.send(new ProducerRecord<>(route.getTopic(), route.getPartition(), key, value),
+                    new PublishCallback(route, key, value, attempt));
+            sinkMetrics.sent(cpuTime);
+        } catch (Exception e) {
+            if (currentProducer != producer) {
+                // The compression switch closed the producer in between, the new producer takes the record instead
+                sendRecord(route, key, value, attempt);
+                return;
             }
+            onFailure(route, key, value, attempt, e);
+        }
+    }
+
+    /**
+     * Queues a failed record for another attempt if the failure is transient, such as a leader election, and
+     * attempts are left. Otherwise the record is sent to the dead letter topic, or dropped if there is none.
+     */
+    private void onFailure(PublishRoute route, String key, byte[] value, int attempt, Exception exception) {
+        if (null != retryQueue && attempt < retryMaxAttempts && exception instanceof RetriableException) {
+            if (retryQueue.offer(route, key, value, attempt)) {
+                sinkMetrics.retried();
+                return;
+            }
+            LOG.warn("Kafka sink retry queue is full, not retrying the message to " + route + ".");
+        }
+        deadLetter(route, key, value, attempt, exception, false);
+    }
+
+    /**
+     * Sends a record which is not published to the dead letter topic, or drops it if there is none. Rejected records
+     * can never be published, such as those to a partition the topic does not have, hence replaying them would not
+     * help and they are not counted as failed.
+     */
+    private void deadLetter(PublishRoute route, String key, byte[] value, int attempt, Exception exception,
+                            boolean rejected) {
+        if (null != deadLetterTopic) {
+            try {
+                // Failures are mostly reported on the I/O thread of the producer, which must not block on sending
+                executorService.execute(() -> sendDeadLetter(route, key, value, attempt, exception, rejected));
+                return;
+            } catch (RejectedExecutionException e) {
+                LOG.error("Failed to send the message to " + route + " to dead letter topic " + deadLetterTopic
+                        + " as the execution plan is shutting down.", e);
+            }
+        }
+        dropRecord(route, value, attempt, exception, rejected);
+    }
+
+    private void sendDeadLetter(PublishRoute route, String key, byte[] value, int attempt, Exception exception,
+                                boolean rejected) {
+        try {
+            producer.send(new ProducerRecord<>(deadLetterTopic, null, key, value),
+                    new DeadLetterCallback(route, value.length));
         } catch (Exception e) {
-            LOG.error(String.format("Failed to publish the message to [topic] %s [partition-no] %s. Error: %s",
-                    topic, partitionNo, e.getMessage()), e);
+            LOG.error("Failed to send the message to " + route + " to dead letter topic " + deadLetterTopic
+                    + ". Error: " + e.getMessage(), e);
+            dropRecord(route, value, attempt, exception, rejected);
+        }
+    }
+
+    private void dropRecord(PublishRoute route, byte[] value, int attempt, Exception exception, boolean rejected) {
+        publishWindow.release(value.length);
+        if (rejected) {
+            sinkMetrics.rejected();
+        } else {
+            sinkMetrics.failed();
+        }
+        LOG.error("Failed to publish the message to " + route + " after " + attempt + " attempt/s. Error: "
+                + exception.getMessage(), exception);
+    }
+
+    private void retryFailedRecords() {
+        try {
+            RetryQueue.FailedRecord failedRecord;
+            while (null != (failedRecord = retryQueue.pollDue())) {
+                sendRecord(failedRecord.getRoute(), failedRecord.getKey(), failedRecord.getValue(),
+                        failedRecord.getAttempts() + 1);
+            }
+        } catch (Throwable t) {
+            // A failure must not cancel the scheduled task, which would leave the queued records unsent
+            LOG.error("Failed to retry the failed Kafka records.", t);
         }
     }
 
     @Override
     public void disconnect() {
+        if (null != lingerFuture) {
+            lingerFuture.cancel(false);
+            lingerFuture = null;
+        }
+        if (null != retryFuture) {
+            retryFuture.cancel(false);
+            retryFuture = null;
+        }
+        awaitCompressionSwitch();
         //close producer
         if (producer != null) {
-            producer.close();
+            if (null != retryQueue) {
+                // Queued records get a last attempt right away, further failures go to the dead letter topic
+                RetryQueue.FailedRecord failedRecord;
+                while (null != (failedRecord = retryQueue.pollAny())) {
+                    sendRecord(failedRecord.getRoute(), failedRecord.getKey(), failedRecord.getValue(),
+                            retryMaxAttempts);
+                }
+            }
+            if (null != recordAggregator) {
+                try {
+                    sendBatches(recordAggregator.drainAll());
+                } catch (ConnectionUnavailableException e) {
+                    LOG.error("Kafka sink disconnected without sending the aggregated records. Error: "
+                            + e.getMessage(), e);
+                }
+            }
+            if (null != deadLetterTopic) {
+                // Records failing while flushing are dead lettered by another thread, which needs the producer
+                producer.flush();
+                try {
+                    if (!publishWindow.awaitEmpty(DEAD_LETTER_FLUSH_TIMEOUT)) {
+                        LOG.warn("Kafka sink disconnected with " + publishWindow.getInFlightRecords() + " records "
+                                + "not sent to the broker or to dead letter topic " + deadLetterTopic + ".");
+                    }
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            }
+            if (null != compressionType && LOG.isDebugEnabled()) {
+                LOG.debug("Kafka producer compression rate with '" + producerOverrides.getProperty(
+                        KAFKA_COMPRESSION_TYPE) + "' compression: " + sinkMetrics.getProducerCompressionRate());
+            }
+            releaseProducer(producer);
+            producer = null;
         }
+        sinkMetrics.unregister();
     }
 
     @Override
@@ -134,16 +653,128 @@ public class KafkaSink extends Sink {
 
     @Override
     public String[] getSupportedDynamicOptions() {
-        return new String[]{KAFKA_PUBLISH_TOPIC, KAFKA_PARTITION_NO};
+        return new String[]{KAFKA_PUBLISH_TOPIC, KAFKA_PARTITION_NO, KAFKA_KEY};
     }
 
+    /**
+     * With the at least once delivery guarantee, a snapshot is a barrier for the published events. All events
+     * published before the snapshot are sent and acknowledged by the broker before the snapshot completes, and the
+     * snapshot fails if any of them could not be published, so that a restored execution plan replays them. Once a
+     * record failed, all snapshots fail until the execution plan is restored, as none of them covers that record.
+     * Rejected records, which can never be published, do not fail snapshots as replaying them would not help.
+     */
     @Override
     public Map<String, Object> currentState() {
-        return null;
+        if (!atLeastOnce || null == producer) {
+            return null;
+        }
+        if (null != recordAggregator) {
+            try {
+                sendBatches(recordAggregator.drainAll());
+            } catch (ConnectionUnavailableException e) {
+                throw new ExecutionPlanRuntimeException("Kafka sink could not complete the snapshot. Error: "
+                        + e.getMessage(), e);
+            }
+        }
+        producer.flush();
+        try {
+            if (!publishWindow.awaitEmpty(snapshotFlushTimeout)) {
+                throw new ExecutionPlanRuntimeException("Kafka sink could not complete the snapshot, "
+                        + publishWindow.getInFlightRecords() + " records are not acknowledged after "
+                        + snapshotFlushTimeout + " ms.");
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new ExecutionPlanRuntimeException("Interrupted while waiting for the Kafka sink to complete the "
+                    + "snapshot.", e);
+        }
+        long failed = sinkMetrics.getFailedRecords();
+        if (failed > failedCountAtSnapshot) {
+            throw new ExecutionPlanRuntimeException("Kafka sink could not complete the snapshot, "
+                    + (failed - failedCountAtSnapshot) + " records failed to publish since the execution plan was "
+                    + "started or restored. Snapshots fail until the execution plan is restored.");
+        }
+        Map<String, Map<Integer, Long>> offsets = new HashMap<>();
+        for (Map.Entry<String, Map<Integer, Long>> entry : acknowledgedOffsets.entrySet()) {
+            offsets.put(entry.getKey(), new HashMap<>(entry.getValue()));
+        }
+        Map<String, Object> currentState = new HashMap<>();
+        currentState.put(ACKNOWLEDGED_OFFSETS, offsets);
+        return currentState;
     }
 
     @Override
     public void restoreState(Map<String, Object> state) {
+        // The restored execution plan replays the failed records, hence they no longer fail the snapshots
+        failedCountAtSnapshot = sinkMetrics.getFailedRecords();
+        if (null != state) {
+            // Events published after these offsets are published again as the restored execution plan replays them
+            LOG.info("Kafka sink restored, offsets acknowledged at the snapshot: " + state.get(ACKNOWLEDGED_OFFSETS));
+        }
+    }
 
+    /**
+     * Releases the publish window once the broker acknowledges a record or the send fails. Created right before the
+     * record is handed over to the producer, hence it marks the start of the send latency.
+     */
+    private class PublishCallback implements Callback {
+        private final PublishRoute route;
+        private final String key;
+        private final byte[] value;
+        private final int attempt;
+        private final long sendTime = System.nanoTime();
+
+        PublishCallback(PublishRoute route, String key, byte[] value, int attempt) {
+            this.route = route;
+            this.key = key;
+            this.value = value;
+            this.attempt = attempt;
+        }
+
+        @Override
+        public void onCompletion(RecordMetadata metadata, Exception exception) {
+            if (null == exception) {
+                publishWindow.release(value.length);
+                sinkMetrics.acknowledged(metadata.topic(), sendTime);
+                if (atLeastOnce) {
+                    Map<Integer, Long> offsets = acknowledgedOffsets.get(metadata.topic());
+                    if (null == offsets) {
+                        offsets = new ConcurrentHashMap<>();
+                        Map<Integer, Long> existing = acknowledgedOffsets.putIfAbsent(metadata.topic(), offsets);
+                        if (null != existing) {
+                            offsets = existing;
+                        }
+                    }
+                    offsets.merge(metadata.partition(), metadata.offset(), Math::max);
+                }
+            } else {
+                onFailure(route, key, value, attempt, exception);
+            }
+        }
+    }
+
+    /**
+     * Releases the publish window once a record is sent to the dead letter topic.
+     */
+    private class DeadLetterCallback implements Callback {
+        private final PublishRoute route;
+        private final int size;
+
+        DeadLetterCallback(PublishRoute route, int size) {
+            this.route = route;
+            this.size = size;
+        }
+
+        @Override
+        public void onCompletion(RecordMetadata metadata, Exception exception) {
+            publishWindow.release(size);
+            if (null == exception) {
+                sinkMetrics.deadLettered();
+            } else {
+                sinkMetrics.failed();
+                LOG.error("Failed to send the message to " + route + " to dead letter topic " + deadLetterTopic
+                        + ". Error: " + exception.getMessage(), exception);
+            }
+        }
     }
 }
@@ -0,0 +1,276 @@
+/*
+ * Copyright (c) 2017, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ * WSO2 Inc. licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.wso2.siddhi.extension.output.transport.kafka;
+
+import org.apache.kafka.clients.producer.Producer;
+import org.apache.kafka.common.Metric;
+import org.apache.kafka.common.MetricName;
+import org.apache.log4j.Logger;
+import org.wso2.siddhi.extension.kafka.metrics.LatencyHistogram;
+import org.wso2.siddhi.extension.kafka.metrics.LatencyStats;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Supplier;
+import javax.management.JMException;
+import javax.management.ObjectName;
+
+/**
+ * Collects the send latencies and record counts of a Kafka sink and exposes them as an MXBean, along with the in-flight
+ * records of its publish window and the batching metrics of its producer, which may be shared with other sinks.
+ * Recording only updates striped counters and histograms, hence it does not allocate per record.
+ */
+class KafkaSinkMetrics implements KafkaSinkMetricsMXBean {
+    private static final Logger LOG = Logger.getLogger(KafkaSinkMetrics.class);
+    private static final String DOMAIN = "org.wso2.siddhi.extension.kafka";
+    private static final String PRODUCER_METRICS = "producer-metrics";
+    static final long NOT_SAMPLED = -1;
+    // Reading the CPU time of a thread is a system call, hence only one in this many sends is sampled
+    private static final int CPU_TIME_SAMPLE_RATE = 64;
+    private static final ThreadMXBean THREAD_MX_BEAN = ManagementFactory.getThreadMXBean();
+    private final Map<String, LatencyHistogram> sendLatency = new ConcurrentHashMap<>();
+    private final LongAdder sentRecords = new LongAdder();
+    private final LongAdder acknowledgedRecords = new LongAdder();
+    private final LongAdder failedRecords = new LongAdder();
+    private final LongAdder rejectedRecords = new LongAdder();
+    private final LongAdder retriedRecords = new LongAdder();
+    private final LongAdder deadLetteredRecords = new LongAdder();
+    private final LatencyHistogram publishWindowWait = new LatencyHistogram();
+    private final LongAdder publishWindowTimeouts = new LongAdder();
+    private final LatencyHistogram sendCpuTime = new LatencyHistogram();
+    private final boolean cpuTimeSupported = THREAD_MX_BEAN.isCurrentThreadCpuTimeSupported();
+    private final Supplier<Producer<String, byte[]>> producer;
+    private final boolean sharedProducer;
+    private final PublishWindow publishWindow;
+    private ObjectName objectName;
+
+    KafkaSinkMetrics(Supplier<Producer<String, byte[]>> producer, boolean sharedProducer,
+                     PublishWindow publishWindow) {
+        this.producer = producer;
+        this.sharedProducer = sharedProducer;
+        this.publishWindow = publishWindow;
+    }
+
+    /**
+     * @return CPU time of the current thread to pass to {@link #sent(long)} if this send is sampled, otherwise
+     * {@link #NOT_SAMPLED}
+     */
+    long sampleCpuTime() {
+        if (!cpuTimeSupported || ThreadLocalRandom.current().nextInt(CPU_TIME_SAMPLE_RATE) != 0) {
+            return NOT_SAMPLED;
+        }
+        return THREAD_MX_BEAN.getCurrentThreadCpuTime();
+    }
+
+    /**
+     * @param cpuTime CPU time of the current thread before sending, as given by {@link #sampleCpuTime()}
+     */
+    void sent(long cpuTime) {
+        sentRecords.increment();
+        if (cpuTime >= 0) {
+            long cpuTimeAfter = THREAD_MX_BEAN.getCurrentThreadCpuTime();
+            if (cpuTimeAfter >= 0) {
+                sendCpuTime.record(cpuTimeAfter - cpuTime);
+            }
+        }
+    }
+
+    /**
+     * @param topic    topic the record was acknowledged for
+     * @param sendTime time the record was handed over to the producer, as given by {@link System#nanoTime()}
+     */
+    void acknowledged(String topic, long sendTime) {
+        acknowledgedRecords.increment();
+        LatencyHistogram histogram = sendLatency.get(topic);
+        if (null == histogram) {
+            histogram = sendLatency.computeIfAbsent(topic, key -> new LatencyHistogram());
+        }
+        histogram.record(System.nanoTime() - sendTime);
+    }
+
+    void failed() {
+        failedRecords.increment();
+    }
+
+    void rejected() {
+        rejectedRecords.increment();
+    }
+
+    void retried() {
+        retriedRecords.increment();
+    }
+
+    void deadLettered() {
+        deadLetteredRecords.increment();
+    }
+
+    /**
+     * @param waitTime time a record waited for the publish window in nanoseconds, only recorded if it was full
+     * @param timedOut whether the window was still full after the wait
+     */
+    void waitedForWindow(long waitTime, boolean timedOut) {
+        publishWindowWait.record(waitTime);
+        if (timedOut) {
+            publishWindowTimeouts.increment();
+        }
+    }
+
+    void register(String executionPlanName, String streamId) {
+        try {
+            objectName = new ObjectName(DOMAIN + ":type=KafkaSink,executionPlan="
+                    + ObjectName.quote(String.valueOf(executionPlanName)) + ",stream="
+                    + ObjectName.quote(String.valueOf(streamId)));
+            ManagementFactory.getPlatformMBeanServer().registerMBean(this, objectName);
+        } catch (JMException e) {
+            LOG.warn("Metrics of Kafka sink for stream " + streamId + " are not exposed through JMX.", e);
+            objectName = null;
+        }
+    }
+
+    void unregister() {
+        if (null != objectName) {
+            try {
+                ManagementFactory.getPlatformMBeanServer().unregisterMBean(objectName);
+            } catch (JMException e) {
+                LOG.warn("Error while unregistering the metrics MBean " + objectName, e);
+            }
+            objectName = null;
+        }
+    }
+
+    @Override
+    public Map<String, LatencyStats> getSendLatency() {
+        Map<String, LatencyStats> latencies = new TreeMap<>();
+        sendLatency.forEach((topic, histogram) -> latencies.put(topic, histogram.snapshot()));
+        return latencies;
+    }
+
+    @Override
+    public LatencyStats getSendCpuTime() {
+        return sendCpuTime.snapshot();
+    }
+
+    @Override
+    public long getSentRecords() {
+        return sentRecords.sum();
+    }
+
+    @Override
+    public long getAcknowledgedRecords() {
+        return acknowledgedRecords.sum();
+    }
+
+    @Override
+    public long getFailedRecords() {
+        return failedRecords.sum();
+    }
+
+    @Override
+    public long getRejectedRecords() {
+        return rejectedRecords.sum();
+    }
+
+    @Override
+    public long getRetriedRecords() {
+        return retriedRecords.sum();
+    }
+
+    @Override
+    public long getDeadLetteredRecords() {
+        return deadLetteredRecords.sum();
+    }
+
+    @Override
+    public LatencyStats getPublishWindowWait() {
+        return publishWindowWait.snapshot();
+    }
+
+    @Override
+    public long getPublishWindowTimeouts() {
+        return publishWindowTimeouts.sum();
+    }
+
+    @Override
+    public int getInFlightRecords() {
+        return publishWindow.getInFlightRecords();
+    }
+
+    @Override
+    public int getInFlightBytes() {
+        return publishWindow.getInFlightBytes();
+    }
+
+    @Override
+    public boolean isProducerShared() {
+        return sharedProducer;
+    }
+
+    @Override
+    public double getProducerRecordsPerRequest() {
+        return producerMetric("records-per-request-avg");
+    }
+
+    @Override
+    public double getProducerBatchSizeAverage() {
+        return producerMetric("batch-size-avg");
+    }
+
+    @Override
+    public double getProducerCompressionRate() {
+        return producerMetric("compression-rate-avg");
+    }
+
+    @Override
+    public double getProducerBufferPoolWaitRatio() {
+        return producerMetric("bufferpool-wait-ratio");
+    }
+
+    @Override
+    public double getProducerRecordQueueTimeAverage() {
+        return producerMetric("record-queue-time-avg");
+    }
+
+    @Override
+    public double getProducerRequestLatencyAverage() {
+        return producerMetric("request-latency-avg");
+    }
+
+    @Override
+    public double getProducerRecordErrorRate() {
+        return producerMetric("record-error-rate");
+    }
+
+    private double producerMetric(String name) {
+        Producer<String, byte[]> producer = this.producer.get();
+        if (null != producer) {
+            for (Map.Entry<MetricName, ? extends Metric> entry : producer.metrics().entrySet()) {
+                MetricName metricName = entry.getKey();
+                if (name.equals(metricName.name()) && PRODUCER_METRICS.equals(metricName.group())) {
+                    return entry.getValue().value();
+                }
+            }
+        }
+        return Double.NaN;
+    }
+}
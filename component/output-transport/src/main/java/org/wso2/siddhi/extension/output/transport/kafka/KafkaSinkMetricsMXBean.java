@@ -0,0 +1,101 @@
+/*
+ * Copyright (c) 2017, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ * WSO2 Inc. licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.wso2.siddhi.extension.output.transport.kafka;
+
+import org.wso2.siddhi.extension.kafka.metrics.LatencyStats;
+
+import java.util.Map;
+
+/**
+ * Metrics of a Kafka sink exposed through JMX. The Producer* metrics are the averages reported by the producer of the
+ * sink, which cover the records of all sinks sharing the producer when it is shared. They are NaN while the sink is
+ * not connected.
+ */
+public interface KafkaSinkMetricsMXBean {
+
+    /**
+     * @return time from handing a record over to the producer until the broker acknowledged it, per topic
+     */
+    Map<String, LatencyStats> getSendLatency();
+
+    /**
+     * @return CPU time of the publishing thread handing a record over to the producer, which includes compressing it
+     * into the batch, sampled for a fraction of the records
+     */
+    LatencyStats getSendCpuTime();
+
+    long getSentRecords();
+
+    long getAcknowledgedRecords();
+
+    /**
+     * @return records which could not be published or dead lettered, such as after the retries ran out
+     */
+    long getFailedRecords();
+
+    /**
+     * @return records dropped as they can never be published, such as ones to a partition the topic does not have
+     */
+    long getRejectedRecords();
+
+    long getRetriedRecords();
+
+    long getDeadLetteredRecords();
+
+    /**
+     * @return time records waited for the publish window while it was full, before being sent or timing out
+     */
+    LatencyStats getPublishWindowWait();
+
+    /**
+     * @return records failed as the publish window stayed full, in which case the sink reports the connection as
+     * unavailable
+     */
+    long getPublishWindowTimeouts();
+
+    int getInFlightRecords();
+
+    int getInFlightBytes();
+
+    /**
+     * @return whether the producer is shared with other sinks, in which case the Producer* metrics are not only of
+     * this sink
+     */
+    boolean isProducerShared();
+
+    double getProducerRecordsPerRequest();
+
+    double getProducerBatchSizeAverage();
+
+    /**
+     * @return compressed size over uncompressed size of the batches
+     */
+    double getProducerCompressionRate();
+
+    /**
+     * @return fraction of time the producer waited for buffer memory
+     */
+    double getProducerBufferPoolWaitRatio();
+
+    double getProducerRecordQueueTimeAverage();
+
+    double getProducerRequestLatencyAverage();
+
+    double getProducerRecordErrorRate();
+}
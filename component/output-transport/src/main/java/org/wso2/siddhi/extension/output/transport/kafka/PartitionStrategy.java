@@ -0,0 +1,85 @@
+/*
+ * Copyright (c) 2017, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ * WSO2 Inc. licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.wso2.siddhi.extension.output.transport.kafka;
+
+import org.apache.kafka.clients.producer.Partitioner;
+import org.apache.kafka.common.utils.Utils;
+import org.wso2.siddhi.query.api.exception.ExecutionPlanValidationException;
+
+import java.util.Locale;
+
+/**
+ * Strategies the Kafka sink uses to pick the partition of records which are not sent to a given partition.
+ */
+enum PartitionStrategy {
+    /**
+     * Partitions keyed records by the murmur2 hash of the key and spreads keyless records round robin, as the
+     * default partitioner of the producer does.
+     */
+    HASH(null),
+    /**
+     * Partitions keyed records by the hash of the key and sends consecutive keyless records to the same partition,
+     * which fills the batches of the producer.
+     */
+    STICKY(StickyPartitioner.class),
+    /**
+     * Spreads all records round robin, ignoring their keys.
+     */
+    ROUND_ROBIN(RoundRobinPartitioner.class);
+
+    private final Class<? extends Partitioner> partitionerClass;
+
+    PartitionStrategy(Class<? extends Partitioner> partitionerClass) {
+        this.partitionerClass = partitionerClass;
+    }
+
+    /**
+     * @return the partitioner of the producer implementing the strategy, or null for the default partitioner
+     */
+    Class<? extends Partitioner> getPartitionerClass() {
+        return partitionerClass;
+    }
+
+    /**
+     * @return true if records with the same key always go to the same partition
+     */
+    boolean isKeyed() {
+        return this != ROUND_ROBIN;
+    }
+
+    /**
+     * Partition of a key, matching the default partitioner of the producer.
+     */
+    static int hashPartition(byte[] keyBytes, int numPartitions) {
+        return Utils.abs(Utils.murmur2(keyBytes)) % numPartitions;
+    }
+
+    /**
+     * @param name strategy name as given in the sink definition, such as 'round.robin'
+     * @return the matching strategy
+     */
+    static PartitionStrategy fromName(String name) {
+        try {
+            return valueOf(name.trim().replace('.', '_').toUpperCase(Locale.ENGLISH));
+        } catch (IllegalArgumentException e) {
+            throw new ExecutionPlanValidationException("Unsupported value '" + name + "' for option 'partitioner' "
+                    + "of Kafka sink. Supported values are 'hash', 'sticky' and 'round.robin'.");
+        }
+    }
+}
@@ -0,0 +1,89 @@
+/*
+ * Copyright (c) 2017, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ * WSO2 Inc. licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.wso2.siddhi.extension.output.transport.kafka;
+
+import org.wso2.siddhi.query.api.exception.ExecutionPlanValidationException;
+
+import java.util.Locale;
+import java.util.Properties;
+
+/**
+ * Named sets of producer configurations tuning the Kafka sink for a given performance goal.
+ */
+enum ProducerProfile {
+    /**
+     * Settings used by the sink before profiles were introduced.
+     */
+    DEFAULT("all", 0, 16384, 1, 33554432, "none", 5),
+    /**
+     * Sends each record right away and only waits for the leader to acknowledge it.
+     */
+    LOW_LATENCY("1", 0, 16384, 0, 33554432, "none", 5),
+    /**
+     * Lingers to fill large compressed batches and only waits for the leader to acknowledge them.
+     */
+    HIGH_THROUGHPUT("1", 0, 262144, 20, 67108864, "lz4", 5),
+    /**
+     * Waits for all in-sync replicas and retries failed sends, keeping a single request in flight per connection so
+     * that retries cannot reorder records.
+     */
+    DURABLE("all", Integer.MAX_VALUE, 16384, 5, 33554432, "none", 1);
+
+    private final String acks;
+    private final int retries;
+    private final int batchSize;
+    private final int lingerMs;
+    private final long bufferMemory;
+    private final String compressionType;
+    private final int maxInFlightRequests;
+
+    ProducerProfile(String acks, int retries, int batchSize, int lingerMs, long bufferMemory, String compressionType,
+                    int maxInFlightRequests) {
+        this.acks = acks;
+        this.retries = retries;
+        this.batchSize = batchSize;
+        this.lingerMs = lingerMs;
+        this.bufferMemory = bufferMemory;
+        this.compressionType = compressionType;
+        this.maxInFlightRequests = maxInFlightRequests;
+    }
+
+    void apply(Properties props) {
+        props.put("acks", acks);
+        props.put("retries", retries);
+        props.put("batch.size", batchSize);
+        props.put("linger.ms", lingerMs);
+        props.put("buffer.memory", bufferMemory);
+        props.put("compression.type", compressionType);
+        props.put("max.in.flight.requests.per.connection", maxInFlightRequests);
+    }
+
+    /**
+     * @param name profile name as given in the sink definition, such as 'high.throughput'
+     * @return the matching profile
+     */
+    static ProducerProfile fromName(String name) {
+        try {
+            return valueOf(name.trim().replace('.', '_').toUpperCase(Locale.ENGLISH));
+        } catch (IllegalArgumentException e) {
+            throw new ExecutionPlanValidationException("Unsupported Kafka sink performance profile '" + name
+                    + "'. Supported profiles are 'default', 'low.latency', 'high.throughput' and 'durable'.", e);
+        }
+    }
+}
@@ -0,0 +1,65 @@
+/*
+ * Copyright (c) 2017, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ * WSO2 Inc. licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.wso2.siddhi.extension.output.transport.kafka;
+
+/**
+ * Topic and optional partition an event is published to. Routes are resolved once and reused for all events
+ * published to the same destination.
+ */
+class PublishRoute {
+    private final String topic;
+    private final Integer partition;
+    // Identifies the destination, used to group the events aggregated into a record
+    private final String destination;
+    private volatile boolean validated;
+
+    PublishRoute(String topic, Integer partition) {
+        this.topic = topic;
+        this.partition = partition;
+        this.destination = null == partition ? topic : topic + ":" + partition;
+    }
+
+    String getTopic() {
+        return topic;
+    }
+
+    /**
+     * @return the partition to publish to, or null if the producer picks the partition
+     */
+    Integer getPartition() {
+        return partition;
+    }
+
+    String getDestination() {
+        return destination;
+    }
+
+    boolean isValidated() {
+        return validated;
+    }
+
+    void setValidated(boolean validated) {
+        this.validated = validated;
+    }
+
+    @Override
+    public String toString() {
+        return "[topic] " + topic + " [partition-no] " + partition;
+    }
+}
@@ -0,0 +1,106 @@
+/*
+ * Copyright (c) 2017, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ * WSO2 Inc. licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.wso2.siddhi.extension.output.transport.kafka;
+
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Bounds the number of records and bytes handed over to the Kafka producer which are not yet acknowledged. A full
+ * window blocks the publishing siddhi thread up to a timeout, which applies back pressure to siddhi before the
+ * producer itself has to block on its buffer memory.
+ */
+class PublishWindow {
+    private final int maxRecords;
+    private final int maxBytes;
+    private final Semaphore recordPermits;
+    private final Semaphore bytePermits;
+
+    PublishWindow(int maxRecords, int maxBytes) {
+        this.maxRecords = maxRecords;
+        this.maxBytes = maxBytes;
+        this.recordPermits = new Semaphore(maxRecords);
+        this.bytePermits = new Semaphore(maxBytes);
+    }
+
+    /**
+     * @return false if the window is full, without waiting
+     */
+    boolean tryAcquire(int size) {
+        if (!recordPermits.tryAcquire()) {
+            return false;
+        }
+        if (bytePermits.tryAcquire(permits(size))) {
+            return true;
+        }
+        recordPermits.release();
+        return false;
+    }
+
+    /**
+     * @return false if the window is still full after the timeout
+     */
+    boolean tryAcquire(int size, long timeout) throws InterruptedException {
+        long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(timeout);
+        if (!recordPermits.tryAcquire(timeout, TimeUnit.MILLISECONDS)) {
+            return false;
+        }
+        try {
+            if (bytePermits.tryAcquire(permits(size), deadline - System.nanoTime(), TimeUnit.NANOSECONDS)) {
+                return true;
+            }
+        } catch (InterruptedException e) {
+            recordPermits.release();
+            throw e;
+        }
+        recordPermits.release();
+        return false;
+    }
+
+    void release(int size) {
+        bytePermits.release(permits(size));
+        recordPermits.release();
+    }
+
+    /**
+     * Waits until all records in the window are acknowledged or failed.
+     *
+     * @return false if records are still in flight after the timeout
+     */
+    boolean awaitEmpty(long timeout) throws InterruptedException {
+        if (recordPermits.tryAcquire(maxRecords, timeout, TimeUnit.MILLISECONDS)) {
+            recordPermits.release(maxRecords);
+            return true;
+        }
+        return false;
+    }
+
+    int getInFlightRecords() {
+        return maxRecords - recordPermits.availablePermits();
+    }
+
+    int getInFlightBytes() {
+        return maxBytes - bytePermits.availablePermits();
+    }
+
+    private int permits(int size) {
+        // A record larger than the window would never get through, hence it takes the whole window instead
+        return Math.min(size, maxBytes);
+    }
+}
@@ -0,0 +1,164 @@
+/*
+ * Copyright (c) 2017, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ * WSO2 Inc. licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.wso2.siddhi.extension.output.transport.kafka;
+
+import java.io.ByteArrayOutputStream;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Aggregates the events published to the same topic and partition into framed Kafka records. A batch is completed
+ * once it holds the maximum number of events or bytes, or once it is older than the linger time. Events are either
+ * terminated by a newline, or prefixed by their length as a four byte big endian integer. Newline terminated events
+ * must not contain a newline themselves, as they could not be told apart when splitting the record.
+ */
+class RecordAggregator {
+    private static final int LENGTH_PREFIX_SIZE = 4;
+    private static final int NEWLINE = '\n';
+    private final boolean lengthPrefixed;
+    private final int maxCount;
+    private final int maxBytes;
+    private final long lingerTime;
+    private final Map<String, Batch> batches = new HashMap<>();
+
+    RecordAggregator(boolean lengthPrefixed, int maxCount, int maxBytes, long lingerTime) {
+        this.lengthPrefixed = lengthPrefixed;
+        this.maxCount = maxCount;
+        this.maxBytes = maxBytes;
+        this.lingerTime = lingerTime;
+    }
+
+    /**
+     * @return whether the event can be framed, which is not the case for newline terminated events holding a newline
+     */
+    boolean canFrame(byte[] payload) {
+        if (!lengthPrefixed) {
+            for (byte b : payload) {
+                if (b == NEWLINE) {
+                    return false;
+                }
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Adds an event to the batch of its topic and partition.
+     *
+     * @return the batches completed by adding the event, which are to be sent
+     */
+    synchronized List<Batch> add(PublishRoute route, byte[] payload, long currentTime) {
+        String batchKey = route.getDestination();
+        int frameSize = payload.length + (lengthPrefixed ? LENGTH_PREFIX_SIZE : 1);
+        List<Batch> completed = Collections.emptyList();
+        Batch batch = batches.get(batchKey);
+        if (null != batch && batch.size() + frameSize > maxBytes) {
+            // The event does not fit, hence the batch is sent as it is and the event starts a new one
+            completed = new ArrayList<>(2);
+            completed.add(batches.remove(batchKey));
+            batch = null;
+        }
+        if (null == batch) {
+            batch = new Batch(route, Math.min(maxBytes, Math.max(frameSize, 1024)), currentTime);
+            batches.put(batchKey, batch);
+        }
+        batch.append(payload);
+        if (batch.getCount() >= maxCount || batch.size() >= maxBytes) {
+            if (completed.isEmpty()) {
+                completed = new ArrayList<>(1);
+            }
+            completed.add(batches.remove(batchKey));
+        }
+        return completed;
+    }
+
+    /**
+     * @return the batches which are older than the linger time
+     */
+    synchronized List<Batch> drainExpired(long currentTime) {
+        List<Batch> expired = new ArrayList<>();
+        for (Iterator<Batch> iterator = batches.values().iterator(); iterator.hasNext(); ) {
+            Batch batch = iterator.next();
+            if (currentTime - batch.createdTime >= lingerTime) {
+                expired.add(batch);
+                iterator.remove();
+            }
+        }
+        return expired;
+    }
+
+    /**
+     * @return all batches which are not sent yet
+     */
+    synchronized List<Batch> drainAll() {
+        List<Batch> remaining = new ArrayList<>(batches.values());
+        batches.clear();
+        return remaining;
+    }
+
+    /**
+     * Events aggregated for a topic and partition.
+     */
+    class Batch {
+        private final PublishRoute route;
+        private final ByteArrayOutputStream buffer;
+        private final long createdTime;
+        private int count;
+
+        Batch(PublishRoute route, int initialSize, long createdTime) {
+            this.route = route;
+            this.buffer = new ByteArrayOutputStream(initialSize);
+            this.createdTime = createdTime;
+        }
+
+        private void append(byte[] payload) {
+            if (lengthPrefixed) {
+                buffer.write(payload.length >>> 24);
+                buffer.write(payload.length >>> 16);
+                buffer.write(payload.length >>> 8);
+                buffer.write(payload.length);
+                buffer.write(payload, 0, payload.length);
+            } else {
+                buffer.write(payload, 0, payload.length);
+                buffer.write(NEWLINE);
+            }
+            count++;
+        }
+
+        private int size() {
+            return buffer.size();
+        }
+
+        PublishRoute getRoute() {
+            return route;
+        }
+
+        int getCount() {
+            return count;
+        }
+
+        byte[] toByteArray() {
+            return buffer.toByteArray();
+        }
+    }
+}
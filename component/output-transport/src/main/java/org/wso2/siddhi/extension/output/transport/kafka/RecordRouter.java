@@ -0,0 +1,145 @@
+/*
+ * Copyright (c) 2017, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ * WSO2 Inc. licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.wso2.siddhi.extension.output.transport.kafka;
+
+import org.apache.kafka.clients.producer.Producer;
+import org.apache.kafka.common.PartitionInfo;
+import org.wso2.siddhi.core.util.transport.DynamicOptions;
+import org.wso2.siddhi.core.util.transport.Option;
+import org.wso2.siddhi.query.api.exception.ExecutionPlanValidationException;
+
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Resolves the topic and partition of the published events. Static topic and partition options are resolved once
+ * when the sink is initialized, and the routes of dynamic options are cached, so that publishing an event does not
+ * parse the partition or create a route again. Partitions are validated against the partition count of the topic.
+ */
+class RecordRouter {
+    // Routes of dynamic options are not cached beyond this, to bound the memory used by unbounded destinations
+    private static final int MAX_CACHED_ROUTES = 10000;
+    private final Option topicOption;
+    private final Option partitionOption;
+    // Only set when both the topic and the partition are static
+    private final PublishRoute staticRoute;
+    private final Map<String, PublishRoute> routes = new ConcurrentHashMap<>();
+    private final Map<String, Integer> partitionCounts = new ConcurrentHashMap<>();
+
+    RecordRouter(Option topicOption, Option partitionOption) {
+        this.topicOption = topicOption;
+        this.partitionOption = partitionOption;
+        if (topicOption.isStatic() && (null == partitionOption || partitionOption.isStatic())) {
+            String partitionNo = null == partitionOption ? null : partitionOption.getValue();
+            this.staticRoute = new PublishRoute(topicOption.getValue(), parsePartition(partitionNo));
+        } else {
+            this.staticRoute = null;
+        }
+    }
+
+    PublishRoute route(DynamicOptions dynamicOptions) {
+        if (null != staticRoute) {
+            return staticRoute;
+        }
+        String topic = topicOption.getValue(dynamicOptions);
+        String partitionNo = null == partitionOption ? null : partitionOption.getValue(dynamicOptions);
+        String destination = null == partitionNo ? topic : topic + ":" + partitionNo;
+        PublishRoute route = routes.get(destination);
+        if (null == route) {
+            route = new PublishRoute(topic, parsePartition(partitionNo));
+            if (routes.size() < MAX_CACHED_ROUTES) {
+                routes.put(destination, route);
+            }
+        }
+        return route;
+    }
+
+    /**
+     * Validates the partition of a route against the partitions of its topic, which are fetched once per topic and
+     * fetched again when the partition is beyond the known partitions, as partitions might have been added.
+     *
+     * @return true if the route can be published to
+     */
+    boolean validate(PublishRoute route, Producer<?, ?> producer) {
+        if (route.isValidated() || null == route.getPartition()) {
+            return true;
+        }
+        Integer partitionCount = partitionCounts.get(route.getTopic());
+        if (null == partitionCount || route.getPartition() >= partitionCount) {
+            partitionCount = fetchPartitionCount(route.getTopic(), producer);
+        }
+        if (route.getPartition() < partitionCount) {
+            route.setValidated(true);
+            return true;
+        }
+        return false;
+    }
+
+    /**
+     * Resolves the partition of a keyed record up front, in the same way the producer would, so that events
+     * aggregated into a record keep the partition, and hence the ordering, of their key.
+     *
+     * @return the route to the partition of the key, or the given route if the topic has no known partitions
+     */
+    PublishRoute keyedRoute(PublishRoute route, String key, Producer<?, ?> producer) {
+        Integer partitionCount = partitionCounts.get(route.getTopic());
+        if (null == partitionCount) {
+            partitionCount = fetchPartitionCount(route.getTopic(), producer);
+        }
+        if (partitionCount == 0) {
+            return route;
+        }
+        int partition = PartitionStrategy.hashPartition(key.getBytes(StandardCharsets.UTF_8), partitionCount);
+        String destination = route.getTopic() + ":" + partition;
+        PublishRoute keyedRoute = routes.get(destination);
+        if (null == keyedRoute) {
+            keyedRoute = new PublishRoute(route.getTopic(), partition);
+            keyedRoute.setValidated(true);
+            if (routes.size() < MAX_CACHED_ROUTES) {
+                routes.put(destination, keyedRoute);
+            }
+        }
+        return keyedRoute;
+    }
+
+    private int fetchPartitionCount(String topic, Producer<?, ?> producer) {
+        List<PartitionInfo> partitions = producer.partitionsFor(topic);
+        int partitionCount = null == partitions ? 0 : partitions.size();
+        partitionCounts.put(topic, partitionCount);
+        return partitionCount;
+    }
+
+    private static Integer parsePartition(String partitionNo) {
+        if (null == partitionNo) {
+            return null;
+        }
+        try {
+            int partition = Integer.parseInt(partitionNo.trim());
+            if (partition >= 0) {
+                return partition;
+            }
+        } catch (NumberFormatException e) {
+            // reported below
+        }
+        throw new ExecutionPlanValidationException("Option 'partition.no' of Kafka sink expects a non negative "
+                + "partition number, but found '" + partitionNo + "'.");
+    }
+}
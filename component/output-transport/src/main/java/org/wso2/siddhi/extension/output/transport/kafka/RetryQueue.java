@@ -0,0 +1,132 @@
+/*
+ * Copyright (c) 2017, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ * WSO2 Inc. licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.wso2.siddhi.extension.output.transport.kafka;
+
+import java.util.Iterator;
+import java.util.concurrent.DelayQueue;
+import java.util.concurrent.Delayed;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Bounded queue of records which failed to publish, each of which becomes due for another attempt after an
+ * exponentially growing backoff. Offering never blocks, so that producer callbacks can queue failed records.
+ */
+class RetryQueue {
+    private final DelayQueue<FailedRecord> queue = new DelayQueue<>();
+    private final AtomicInteger size = new AtomicInteger();
+    private final int capacity;
+    private final long backoff;
+    private final long maxBackoff;
+
+    RetryQueue(int capacity, long backoff, long maxBackoff) {
+        this.capacity = capacity;
+        this.backoff = backoff;
+        this.maxBackoff = maxBackoff;
+    }
+
+    /**
+     * @param attempts number of attempts made to publish the record so far
+     * @return false if the queue is full
+     */
+    boolean offer(PublishRoute route, String key, byte[] value, int attempts) {
+        if (size.incrementAndGet() > capacity) {
+            size.decrementAndGet();
+            return false;
+        }
+        long delay = Math.min(maxBackoff, backoff << Math.min(attempts - 1, 30));
+        queue.offer(new FailedRecord(route, key, value, attempts, System.nanoTime()
+                + TimeUnit.MILLISECONDS.toNanos(delay)));
+        return true;
+    }
+
+    /**
+     * @return the next record due for another attempt, or null if none is due
+     */
+    FailedRecord pollDue() {
+        FailedRecord failedRecord = queue.poll();
+        if (null != failedRecord) {
+            size.decrementAndGet();
+        }
+        return failedRecord;
+    }
+
+    /**
+     * @return the next record regardless of whether it is due, or null if the queue is empty
+     */
+    FailedRecord pollAny() {
+        Iterator<FailedRecord> iterator = queue.iterator();
+        if (iterator.hasNext()) {
+            FailedRecord failedRecord = iterator.next();
+            iterator.remove();
+            size.decrementAndGet();
+            return failedRecord;
+        }
+        return null;
+    }
+
+    int size() {
+        return size.get();
+    }
+
+    /**
+     * Record waiting for another attempt to publish it.
+     */
+    static class FailedRecord implements Delayed {
+        private final PublishRoute route;
+        private final String key;
+        private final byte[] value;
+        private final int attempts;
+        private final long dueTime;
+
+        FailedRecord(PublishRoute route, String key, byte[] value, int attempts, long dueTime) {
+            this.route = route;
+            this.key = key;
+            this.value = value;
+            this.attempts = attempts;
+            this.dueTime = dueTime;
+        }
+
+        PublishRoute getRoute() {
+            return route;
+        }
+
+        String getKey() {
+            return key;
+        }
+
+        byte[] getValue() {
+            return value;
+        }
+
+        int getAttempts() {
+            return attempts;
+        }
+
+        @Override
+        public long getDelay(TimeUnit unit) {
+            return unit.convert(dueTime - System.nanoTime(), TimeUnit.NANOSECONDS);
+        }
+
+        @Override
+        public int compareTo(Delayed other) {
+            return Long.compare(dueTime, ((FailedRecord) other).dueTime);
+        }
+    }
+}
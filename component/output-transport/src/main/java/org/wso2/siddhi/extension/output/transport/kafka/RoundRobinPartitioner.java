@@ -0,0 +1,66 @@
+/*
+ * Copyright (c) 2017, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ * WSO2 Inc. licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.wso2.siddhi.extension.output.transport.kafka;
+
+import org.apache.kafka.clients.producer.Partitioner;
+import org.apache.kafka.common.Cluster;
+import org.apache.kafka.common.PartitionInfo;
+
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Producer partitioner which spreads all records over the available partitions of a topic round robin, ignoring
+ * their keys.
+ */
+public class RoundRobinPartitioner implements Partitioner {
+    private final ConcurrentMap<String, AtomicInteger> recordCounters = new ConcurrentHashMap<>();
+
+    @Override
+    public void configure(Map<String, ?> configs) {
+        //not required
+    }
+
+    @Override
+    public int partition(String topic, Object key, byte[] keyBytes, Object value, byte[] valueBytes,
+                         Cluster cluster) {
+        AtomicInteger recordCounter = recordCounters.get(topic);
+        if (null == recordCounter) {
+            recordCounter = new AtomicInteger();
+            AtomicInteger existing = recordCounters.putIfAbsent(topic, recordCounter);
+            if (null != existing) {
+                recordCounter = existing;
+            }
+        }
+        int index = recordCounter.getAndIncrement() & Integer.MAX_VALUE;
+        List<PartitionInfo> availablePartitions = cluster.availablePartitionsForTopic(topic);
+        if (!availablePartitions.isEmpty()) {
+            return availablePartitions.get(index % availablePartitions.size()).partition();
+        }
+        return index % cluster.partitionsForTopic(topic).size();
+    }
+
+    @Override
+    public void close() {
+        //not required
+    }
+}
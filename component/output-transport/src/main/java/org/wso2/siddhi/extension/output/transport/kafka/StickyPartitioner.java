@@ -0,0 +1,84 @@
+/*
+ * Copyright (c) 2017, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ * WSO2 Inc. licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.wso2.siddhi.extension.output.transport.kafka;
+
+import org.apache.kafka.clients.producer.Partitioner;
+import org.apache.kafka.common.Cluster;
+import org.apache.kafka.common.PartitionInfo;
+
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Producer partitioner which partitions keyed records by the hash of their key and sends keyless records to the
+ * same partition until their values fill a batch of the producer, before moving on to the next partition. Compared
+ * to spreading keyless records round robin, this fills the batches of a partition instead of sending many small ones.
+ * The size of a batch is taken from the 'batch.size' of the producer, hence no configuration unknown to the producer
+ * is needed.
+ */
+public class StickyPartitioner implements Partitioner {
+    static final String BATCH_SIZE = "batch.size";
+    // Default batch size of the producer
+    static final int DEFAULT_BATCH_SIZE = 16384;
+    private final ConcurrentMap<String, AtomicLong> byteCounters = new ConcurrentHashMap<>();
+    private int batchSize = DEFAULT_BATCH_SIZE;
+
+    @Override
+    public void configure(Map<String, ?> configs) {
+        Object value = configs.get(BATCH_SIZE);
+        if (null != value) {
+            batchSize = Math.max(1, Integer.parseInt(value.toString()));
+        }
+    }
+
+    @Override
+    public int partition(String topic, Object key, byte[] keyBytes, Object value, byte[] valueBytes,
+                         Cluster cluster) {
+        List<PartitionInfo> partitions = cluster.partitionsForTopic(topic);
+        if (null != keyBytes) {
+            return PartitionStrategy.hashPartition(keyBytes, partitions.size());
+        }
+        AtomicLong byteCounter = byteCounters.get(topic);
+        if (null == byteCounter) {
+            // Starts at a random partition, so that producers do not stick to the same partitions
+            byteCounter = new AtomicLong(ThreadLocalRandom.current().nextInt(partitions.size()) * (long) batchSize);
+            AtomicLong existing = byteCounters.putIfAbsent(topic, byteCounter);
+            if (null != existing) {
+                byteCounter = existing;
+            }
+        }
+        // Empty values still count, so that the partition changes even if only empty values are sent
+        int size = null == valueBytes ? 1 : Math.max(1, valueBytes.length);
+        long index = byteCounter.getAndAdd(size) / batchSize;
+        List<PartitionInfo> availablePartitions = cluster.availablePartitionsForTopic(topic);
+        if (!availablePartitions.isEmpty()) {
+            return availablePartitions.get((int) (index % availablePartitions.size())).partition();
+        }
+        return (int) (index % partitions.size());
+    }
+
+    @Override
+    public void close() {
+        //not required
+    }
+}
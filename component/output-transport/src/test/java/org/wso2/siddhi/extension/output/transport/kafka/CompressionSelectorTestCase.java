@@ -0,0 +1,70 @@
+/*
+ * Copyright (c) 2017, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ * WSO2 Inc. licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.wso2.siddhi.extension.output.transport.kafka;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+public class CompressionSelectorTestCase {
+
+    @Test
+    public void testCodecDecidedOnceSampled() {
+        CompressionSelector compressionSelector = new CompressionSelector(() -> 0.9);
+        for (int i = 1; i < CompressionSelector.SAMPLE_SIZE; i++) {
+            assertNull(compressionSelector.sample(100));
+        }
+        assertEquals("snappy", compressionSelector.sample(100));
+        // The codec is only switched once
+        assertNull(compressionSelector.sample(100));
+    }
+
+    @Test
+    public void testBusyCpuKeepsCheapestCodec() {
+        assertEquals(CompressionSelector.INITIAL_CODEC,
+                decide(CompressionSelector.LARGE_PAYLOAD_SIZE * 10, CompressionSelector.MIN_CPU_HEADROOM - 0.01));
+        assertEquals(CompressionSelector.INITIAL_CODEC, decide(100, 0));
+    }
+
+    @Test
+    public void testLargePayloadsWithCpuHeadroomUseGzip() {
+        assertEquals("gzip", decide(CompressionSelector.LARGE_PAYLOAD_SIZE, CompressionSelector.HIGH_CPU_HEADROOM));
+        assertEquals("gzip", decide(CompressionSelector.LARGE_PAYLOAD_SIZE * 10, 1));
+    }
+
+    @Test
+    public void testSnappyOtherwise() {
+        // Large payloads, but not enough CPU headroom for gzip
+        assertEquals("snappy",
+                decide(CompressionSelector.LARGE_PAYLOAD_SIZE, CompressionSelector.HIGH_CPU_HEADROOM - 0.01));
+        assertEquals("snappy", decide(CompressionSelector.LARGE_PAYLOAD_SIZE, CompressionSelector.MIN_CPU_HEADROOM));
+        // Small payloads with CPU to spare
+        assertEquals("snappy", decide(CompressionSelector.LARGE_PAYLOAD_SIZE - 1, 1));
+    }
+
+    private static String decide(int payloadSize, double cpuHeadroom) {
+        CompressionSelector compressionSelector = new CompressionSelector(() -> cpuHeadroom);
+        String codec = null;
+        for (int i = 0; i < CompressionSelector.SAMPLE_SIZE; i++) {
+            codec = compressionSelector.sample(payloadSize);
+        }
+        return codec;
+    }
+}
@@ -0,0 +1,111 @@
+/*
+ * Copyright (c) 2017, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ * WSO2 Inc. licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.wso2.siddhi.extension.output.transport.kafka;
+
+import org.apache.kafka.clients.producer.KafkaProducer;
+import org.apache.kafka.clients.producer.MockProducer;
+import org.apache.kafka.clients.producer.Producer;
+import org.apache.kafka.common.serialization.ByteArraySerializer;
+import org.apache.kafka.common.serialization.StringSerializer;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Properties;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class KafkaProducerPoolTestCase {
+    private final List<CountingProducer> producers = new ArrayList<>();
+
+    @Before
+    public void setUp() {
+        KafkaProducerPool.setProducerFactory(props -> {
+            CountingProducer producer = new CountingProducer();
+            producers.add(producer);
+            return producer;
+        });
+    }
+
+    @After
+    public void tearDown() {
+        KafkaProducerPool.setProducerFactory(KafkaProducer::new);
+    }
+
+    @Test
+    public void testSharedProducerClosedOnLastRelease() {
+        Producer<String, byte[]> first = KafkaProducerPool.acquire(props("localhost:9092", 1));
+        // Same configurations given in another form share the producer
+        Properties sameProps = new Properties();
+        sameProps.put("linger.ms", "1");
+        sameProps.put("bootstrap.servers", "localhost:9092");
+        Producer<String, byte[]> second = KafkaProducerPool.acquire(sameProps);
+        assertTrue(first == second);
+        assertEquals(1, producers.size());
+
+        KafkaProducerPool.release(first);
+        assertEquals(0, producers.get(0).closeCount);
+        KafkaProducerPool.release(second);
+        assertEquals(1, producers.get(0).closeCount);
+
+        // A released producer is not handed out again
+        Producer<String, byte[]> third = KafkaProducerPool.acquire(props("localhost:9092", 1));
+        assertTrue(third != first);
+        KafkaProducerPool.release(third);
+        assertEquals(1, producers.get(1).closeCount);
+    }
+
+    @Test
+    public void testDifferentConfigurationsAndUnpooledProducer() {
+        Producer<String, byte[]> first = KafkaProducerPool.acquire(props("localhost:9092", 1));
+        Producer<String, byte[]> second = KafkaProducerPool.acquire(props("localhost:9092", 5));
+        assertTrue(first != second);
+        KafkaProducerPool.release(first);
+        KafkaProducerPool.release(second);
+        assertEquals(1, producers.get(0).closeCount);
+        assertEquals(1, producers.get(1).closeCount);
+
+        CountingProducer unpooled = new CountingProducer();
+        KafkaProducerPool.release(unpooled);
+        assertEquals(1, unpooled.closeCount);
+    }
+
+    private static Properties props(String bootstrapServers, int lingerMs) {
+        Properties props = new Properties();
+        props.put("bootstrap.servers", bootstrapServers);
+        props.put("linger.ms", lingerMs);
+        return props;
+    }
+
+    private static class CountingProducer extends MockProducer<String, byte[]> {
+        private int closeCount;
+
+        CountingProducer() {
+            super(true, new StringSerializer(), new ByteArraySerializer());
+        }
+
+        @Override
+        public void close() {
+            closeCount++;
+        }
+    }
+}
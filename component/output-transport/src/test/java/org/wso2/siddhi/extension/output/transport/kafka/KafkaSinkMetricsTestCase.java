@@ -0,0 +1,87 @@
+/*
+ * Copyright (c) 2017, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ * WSO2 Inc. licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.wso2.siddhi.extension.output.transport.kafka;
+
+import org.junit.Test;
+import org.wso2.siddhi.extension.kafka.metrics.LatencyStats;
+
+import java.lang.management.ManagementFactory;
+import java.util.Map;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class KafkaSinkMetricsTestCase {
+
+    @Test
+    public void testRecordCounts() {
+        PublishWindow publishWindow = new PublishWindow(10, 1024);
+        KafkaSinkMetrics sinkMetrics = new KafkaSinkMetrics(() -> null, true, publishWindow);
+        assertTrue(publishWindow.tryAcquire(100));
+        sinkMetrics.sent(KafkaSinkMetrics.NOT_SAMPLED);
+        sinkMetrics.sent(KafkaSinkMetrics.NOT_SAMPLED);
+        sinkMetrics.acknowledged("topic_a", System.nanoTime());
+        sinkMetrics.acknowledged("topic_b", System.nanoTime());
+        sinkMetrics.acknowledged("topic_b", System.nanoTime());
+        sinkMetrics.failed();
+        sinkMetrics.rejected();
+
+        assertEquals(2, sinkMetrics.getSentRecords());
+        assertEquals(3, sinkMetrics.getAcknowledgedRecords());
+        assertEquals(1, sinkMetrics.getFailedRecords());
+        assertEquals(1, sinkMetrics.getRejectedRecords());
+        assertEquals(1, sinkMetrics.getInFlightRecords());
+        assertEquals(100, sinkMetrics.getInFlightBytes());
+        Map<String, LatencyStats> sendLatency = sinkMetrics.getSendLatency();
+        assertEquals(2, sendLatency.size());
+        assertEquals(2, sendLatency.get("topic_b").getCount());
+        assertTrue(Double.isNaN(sinkMetrics.getProducerCompressionRate()));
+        assertTrue(sinkMetrics.isProducerShared());
+    }
+
+    @Test
+    public void testPublishWindowTimeout() throws InterruptedException {
+        PublishWindow publishWindow = new PublishWindow(1, 1024);
+        KafkaSinkMetrics sinkMetrics = new KafkaSinkMetrics(() -> null, false, publishWindow);
+        assertTrue(publishWindow.tryAcquire(10));
+        assertFalse(publishWindow.tryAcquire(10));
+        long waitStart = System.nanoTime();
+        boolean acquired = publishWindow.tryAcquire(10, 50);
+        sinkMetrics.waitedForWindow(System.nanoTime() - waitStart, !acquired);
+
+        assertFalse(acquired);
+        assertEquals(1, sinkMetrics.getPublishWindowTimeouts());
+        assertEquals(1, sinkMetrics.getPublishWindowWait().getCount());
+        assertTrue(sinkMetrics.getPublishWindowWait().getMaxMicros() >= 50_000);
+        publishWindow.release(10);
+        assertTrue(publishWindow.tryAcquire(10, 50));
+        assertEquals(1, sinkMetrics.getInFlightRecords());
+    }
+
+    @Test
+    public void testSendCpuTime() {
+        KafkaSinkMetrics sinkMetrics = new KafkaSinkMetrics(() -> null, false, new PublishWindow(10, 1024));
+        sinkMetrics.sent(KafkaSinkMetrics.NOT_SAMPLED);
+        assertEquals(0, sinkMetrics.getSendCpuTime().getCount());
+        sinkMetrics.sent(ManagementFactory.getThreadMXBean().getCurrentThreadCpuTime());
+        assertEquals(1, sinkMetrics.getSendCpuTime().getCount());
+        assertEquals(2, sinkMetrics.getSentRecords());
+    }
+}
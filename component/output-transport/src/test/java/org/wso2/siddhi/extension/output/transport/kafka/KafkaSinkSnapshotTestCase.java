@@ -0,0 +1,85 @@
+/*
+ * Copyright (c) 2017, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ * WSO2 Inc. licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.wso2.siddhi.extension.output.transport.kafka;
+
+import org.apache.kafka.clients.producer.KafkaProducer;
+import org.apache.kafka.clients.producer.MockProducer;
+import org.apache.kafka.common.serialization.ByteArraySerializer;
+import org.apache.kafka.common.serialization.StringSerializer;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.wso2.siddhi.core.ExecutionPlanRuntime;
+import org.wso2.siddhi.core.SiddhiManager;
+import org.wso2.siddhi.core.stream.input.InputHandler;
+import org.wso2.siddhi.extension.output.mapper.text.TextSinkMapper;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+
+public class KafkaSinkSnapshotTestCase {
+    private final List<MockProducer<String, byte[]>> producers = new ArrayList<>();
+
+    @Before
+    public void setUp() {
+        KafkaProducerPool.setProducerFactory(props -> {
+            MockProducer<String, byte[]> producer =
+                    new MockProducer<>(true, new StringSerializer(), new ByteArraySerializer());
+            producers.add(producer);
+            return producer;
+        });
+    }
+
+    @After
+    public void tearDown() {
+        KafkaProducerPool.setProducerFactory(KafkaProducer::new);
+    }
+
+    @Test
+    public void testSnapshotAfterRejectedRecord() throws InterruptedException {
+        SiddhiManager siddhiManager = new SiddhiManager();
+        siddhiManager.setExtension("sinkMapper:text", TextSinkMapper.class);
+        ExecutionPlanRuntime executionPlanRuntime = siddhiManager.createExecutionPlanRuntime(
+                "@Plan:name('TestExecutionPlan') " +
+                        "define stream FooStream (symbol string, price float, volume long); " +
+                        "@info(name = 'query1') " +
+                        "@sink(type='kafka', topic='snapshot_topic', bootstrap.servers='localhost:9092', " +
+                        "shared.producer='true', delivery.guarantee='at.least.once', " +
+                        "record.framing='newline', @map(type='text'))" +
+                        "Define stream BarStream (symbol string, price float, volume long);" +
+                        "from FooStream select symbol, price, volume insert into BarStream;");
+        InputHandler fooStream = executionPlanRuntime.getInputHandler("FooStream");
+        executionPlanRuntime.start();
+        try {
+            // A multi-line message can not be framed with newlines, hence it is rejected and never published
+            fooStream.send(new Object[]{"WSO2\nIBM", 55.6f, 100L});
+            fooStream.send(new Object[]{"WSO2", 57.6f, 100L});
+            // The rejected record would not be published on a replay either, hence the snapshot does not fail
+            assertNotNull(executionPlanRuntime.snapshot());
+            assertEquals(1, producers.size());
+            assertEquals(1, producers.get(0).history().size());
+        } finally {
+            executionPlanRuntime.shutdown();
+            siddhiManager.shutdown();
+        }
+    }
+}
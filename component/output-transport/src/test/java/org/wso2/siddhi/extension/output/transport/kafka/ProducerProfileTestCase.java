@@ -0,0 +1,93 @@
+/*
+ * Copyright (c) 2017, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ * WSO2 Inc. licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.wso2.siddhi.extension.output.transport.kafka;
+
+import org.junit.Test;
+import org.wso2.siddhi.query.api.exception.ExecutionPlanValidationException;
+
+import java.util.Properties;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+public class ProducerProfileTestCase {
+
+    @Test
+    public void testProfileNames() {
+        assertEquals(ProducerProfile.DEFAULT, ProducerProfile.fromName("default"));
+        assertEquals(ProducerProfile.LOW_LATENCY, ProducerProfile.fromName("low.latency"));
+        assertEquals(ProducerProfile.HIGH_THROUGHPUT, ProducerProfile.fromName(" High.Throughput "));
+        assertEquals(ProducerProfile.DURABLE, ProducerProfile.fromName("DURABLE"));
+        try {
+            ProducerProfile.fromName("fastest");
+            fail("Profile 'fastest' is accepted");
+        } catch (ExecutionPlanValidationException e) {
+            assertTrue(e.getMessage().contains("'fastest'"));
+        }
+    }
+
+    @Test
+    public void testProfileSettings() {
+        Properties props = producerConfig(ProducerProfile.HIGH_THROUGHPUT, null, new Properties());
+        assertEquals("1", props.get("acks"));
+        assertEquals(262144, props.get("batch.size"));
+        assertEquals(20, props.get("linger.ms"));
+        assertEquals("lz4", props.get("compression.type"));
+
+        props = producerConfig(ProducerProfile.DURABLE, null, new Properties());
+        assertEquals("all", props.get("acks"));
+        assertEquals(Integer.MAX_VALUE, props.get("retries"));
+        // A single request in flight keeps retries from reordering records
+        assertEquals(1, props.get("max.in.flight.requests.per.connection"));
+    }
+
+    @Test
+    public void testOverridePrecedence() {
+        Properties producerOverrides = new Properties();
+        producerOverrides.put("linger.ms", "50");
+        Properties props = producerConfig(ProducerProfile.HIGH_THROUGHPUT, "linger.ms:10,batch.size:65536,"
+                + "client.id:sink", producerOverrides);
+        // First class options override the optional configuration, which overrides the profile
+        assertEquals("50", props.get("linger.ms"));
+        assertEquals("65536", props.get("batch.size"));
+        assertEquals("sink", props.get("client.id"));
+        assertEquals("lz4", props.get("compression.type"));
+        assertEquals("localhost:9092", props.get("bootstrap.servers"));
+    }
+
+    @Test
+    public void testNumericOptionValidation() {
+        assertEquals("100", KafkaSink.validateNonNegative("linger.ms", " 100 "));
+        assertEquals("0", KafkaSink.validateNonNegative("retries", "0"));
+        for (String value : new String[]{"-1", "ten", "1.5", ""}) {
+            try {
+                KafkaSink.validateNonNegative("batch.size", value);
+                fail("Value '" + value + "' is accepted");
+            } catch (ExecutionPlanValidationException e) {
+                assertTrue(e.getMessage().contains("'batch.size'"));
+            }
+        }
+    }
+
+    private static Properties producerConfig(ProducerProfile producerProfile, String optionalConfigs,
+                                             Properties producerOverrides) {
+        return KafkaSink.producerConfig("localhost:9092", producerProfile, optionalConfigs, producerOverrides);
+    }
+}
@@ -0,0 +1,111 @@
+/*
+ * Copyright (c) 2017, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ * WSO2 Inc. licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.wso2.siddhi.extension.output.transport.kafka;
+
+import org.apache.kafka.clients.producer.MockProducer;
+import org.apache.kafka.common.PartitionInfo;
+import org.apache.kafka.common.serialization.ByteArraySerializer;
+import org.apache.kafka.common.serialization.StringSerializer;
+import org.junit.Test;
+import org.wso2.siddhi.core.util.transport.Option;
+import org.wso2.siddhi.query.api.exception.ExecutionPlanValidationException;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+public class RecordRouterTestCase {
+
+    @Test
+    public void testMalformedPartition() {
+        for (String partitionNo : new String[]{"one", "-1", "1.5", ""}) {
+            try {
+                new RecordRouter(option("topic", "kafka_topic"), option("partition.no", partitionNo));
+                fail("Partition '" + partitionNo + "' is accepted");
+            } catch (ExecutionPlanValidationException e) {
+                assertTrue(e.getMessage().contains("'" + partitionNo + "'"));
+            }
+        }
+    }
+
+    @Test
+    public void testStaticPartition() {
+        RecordRouter recordRouter = new RecordRouter(option("topic", "kafka_topic"), option("partition.no", " 1 "));
+        PublishRoute route = recordRouter.route(null);
+        assertEquals("kafka_topic", route.getTopic());
+        assertEquals(Integer.valueOf(1), route.getPartition());
+        assertTrue(route == recordRouter.route(null));
+    }
+
+    @Test
+    public void testOutOfRangePartition() {
+        PartitionedProducer producer = new PartitionedProducer(2);
+        RecordRouter recordRouter = new RecordRouter(option("topic", "kafka_topic"), option("partition.no", "2"));
+        PublishRoute route = recordRouter.route(null);
+        assertFalse(recordRouter.validate(route, producer));
+        assertFalse(route.isValidated());
+
+        // Partitions added to the topic are fetched again
+        producer.partitionCount = 3;
+        assertTrue(recordRouter.validate(route, producer));
+        assertTrue(route.isValidated());
+        assertTrue(recordRouter.validate(route, producer));
+        assertEquals(2, producer.fetchCount);
+    }
+
+    @Test
+    public void testPartitionCountFetchedOnce() {
+        PartitionedProducer producer = new PartitionedProducer(2);
+        RecordRouter recordRouter = new RecordRouter(option("topic", "kafka_topic"), null);
+        assertTrue(recordRouter.validate(new PublishRoute("kafka_topic", 0), producer));
+        assertTrue(recordRouter.validate(new PublishRoute("kafka_topic", 1), producer));
+        assertEquals(1, producer.fetchCount);
+        // Records without a partition are partitioned by the producer
+        assertTrue(recordRouter.validate(recordRouter.route(null), producer));
+        assertEquals(1, producer.fetchCount);
+    }
+
+    private static Option option(String key, String value) {
+        return new Option(key, value, null);
+    }
+
+    private static class PartitionedProducer extends MockProducer<String, byte[]> {
+        private int partitionCount;
+        private int fetchCount;
+
+        PartitionedProducer(int partitionCount) {
+            super(true, new StringSerializer(), new ByteArraySerializer());
+            this.partitionCount = partitionCount;
+        }
+
+        @Override
+        public List<PartitionInfo> partitionsFor(String topic) {
+            fetchCount++;
+            List<PartitionInfo> partitions = new ArrayList<>(partitionCount);
+            for (int i = 0; i < partitionCount; i++) {
+                partitions.add(new PartitionInfo(topic, i, null, null, null));
+            }
+            return partitions;
+        }
+    }
+}
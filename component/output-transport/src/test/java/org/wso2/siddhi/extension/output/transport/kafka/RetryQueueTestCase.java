@@ -0,0 +1,52 @@
+/*
+ * Copyright (c) 2017, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ * WSO2 Inc. licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.wso2.siddhi.extension.output.transport.kafka;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+public class RetryQueueTestCase {
+
+    @Test
+    public void testBackoffAndCapacity() throws InterruptedException {
+        RetryQueue retryQueue = new RetryQueue(2, 50, 1000);
+        PublishRoute route = new PublishRoute("kafka_topic", 0);
+        assertTrue(retryQueue.offer(route, null, new byte[]{1}, 1));
+        assertTrue(retryQueue.offer(route, null, new byte[]{2}, 3));
+        assertFalse(retryQueue.offer(route, null, new byte[]{3}, 1));
+        assertNull(retryQueue.pollDue());
+
+        Thread.sleep(100);
+        RetryQueue.FailedRecord failedRecord = retryQueue.pollDue();
+        assertEquals(1, failedRecord.getValue()[0]);
+        assertEquals(1, failedRecord.getAttempts());
+        // The second record backs off for 200 ms after its third attempt
+        assertNull(retryQueue.pollDue());
+        assertEquals(1, retryQueue.size());
+
+        failedRecord = retryQueue.pollAny();
+        assertEquals(2, failedRecord.getValue()[0]);
+        assertEquals(0, retryQueue.size());
+        assertNull(retryQueue.pollAny());
+    }
+}
@@ -0,0 +1,65 @@
+/*
+ * Copyright (c) 2017, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ * WSO2 Inc. licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.wso2.siddhi.extension.output.transport.kafka;
+
+import org.apache.kafka.common.Cluster;
+import org.junit.Test;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Collections;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotEquals;
+
+public class RoundRobinPartitionerTestCase {
+    private static final String TOPIC = "kafka_topic";
+
+    @Test
+    public void testDistribution() {
+        RoundRobinPartitioner partitioner = new RoundRobinPartitioner();
+        partitioner.configure(Collections.<String, Object>emptyMap());
+        Cluster cluster = StickyPartitionerTestCase.cluster(3, -1);
+        int[] recordCounts = new int[3];
+        int previous = -1;
+        for (int i = 0; i < 300; i++) {
+            // Keys are ignored, hence the same key spreads over all partitions
+            byte[] keyBytes = "key".getBytes(StandardCharsets.UTF_8);
+            int partition = partitioner.partition(TOPIC, "key", keyBytes, null, new byte[10], cluster);
+            assertNotEquals(previous, partition);
+            recordCounts[partition]++;
+            previous = partition;
+        }
+        for (int recordCount : recordCounts) {
+            assertEquals(100, recordCount);
+        }
+    }
+
+    @Test
+    public void testUnavailablePartitionSkipped() {
+        RoundRobinPartitioner partitioner = new RoundRobinPartitioner();
+        Cluster cluster = StickyPartitionerTestCase.cluster(3, 1);
+        int[] recordCounts = new int[3];
+        for (int i = 0; i < 100; i++) {
+            recordCounts[partitioner.partition(TOPIC, null, null, null, new byte[10], cluster)]++;
+        }
+        assertEquals(50, recordCounts[0]);
+        assertEquals(0, recordCounts[1]);
+        assertEquals(50, recordCounts[2]);
+    }
+}
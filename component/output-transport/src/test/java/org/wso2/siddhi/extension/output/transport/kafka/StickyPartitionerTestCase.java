@@ -0,0 +1,125 @@
+/*
+ * Copyright (c) 2017, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ * WSO2 Inc. licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.wso2.siddhi.extension.output.transport.kafka;
+
+import org.apache.kafka.common.Cluster;
+import org.apache.kafka.common.Node;
+import org.apache.kafka.common.PartitionInfo;
+import org.junit.Test;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotEquals;
+
+public class StickyPartitionerTestCase {
+    private static final String TOPIC = "kafka_topic";
+
+    @Test
+    public void testStickinessWindow() {
+        StickyPartitioner partitioner = partitioner(1000);
+        Cluster cluster = cluster(4, -1);
+        byte[] value = new byte[100];
+        int first = partitioner.partition(TOPIC, null, null, null, value, cluster);
+        // The records of a batch stay on the partition picked for the first one
+        for (int i = 1; i < 10; i++) {
+            assertEquals(first, partitioner.partition(TOPIC, null, null, null, value, cluster));
+        }
+        int second = partitioner.partition(TOPIC, null, null, null, value, cluster);
+        assertEquals((first + 1) % 4, second);
+        for (int i = 1; i < 10; i++) {
+            assertEquals(second, partitioner.partition(TOPIC, null, null, null, value, cluster));
+        }
+    }
+
+    @Test
+    public void testDistribution() {
+        StickyPartitioner partitioner = partitioner(1000);
+        Cluster cluster = cluster(4, -1);
+        Map<Integer, Integer> recordCounts = new HashMap<>();
+        byte[] value = new byte[100];
+        for (int i = 0; i < 400; i++) {
+            recordCounts.merge(partitioner.partition(TOPIC, null, null, null, value, cluster), 1, Integer::sum);
+        }
+        // Whole batches rotate over all partitions
+        assertEquals(4, recordCounts.size());
+        for (int recordCount : recordCounts.values()) {
+            assertEquals(100, recordCount);
+        }
+    }
+
+    @Test
+    public void testUnavailablePartitionSkipped() {
+        StickyPartitioner partitioner = partitioner(100);
+        Cluster cluster = cluster(4, 2);
+        for (int i = 0; i < 100; i++) {
+            assertNotEquals(2, partitioner.partition(TOPIC, null, null, null, new byte[50], cluster));
+        }
+    }
+
+    @Test
+    public void testKeyedRecords() {
+        StickyPartitioner partitioner = partitioner(100);
+        Cluster cluster = cluster(4, -1);
+        for (int i = 0; i < 100; i++) {
+            byte[] keyBytes = ("key" + i).getBytes(StandardCharsets.UTF_8);
+            assertEquals(PartitionStrategy.hashPartition(keyBytes, 4),
+                    partitioner.partition(TOPIC, "key" + i, keyBytes, null, new byte[50], cluster));
+        }
+    }
+
+    @Test
+    public void testDefaultBatchSize() {
+        StickyPartitioner partitioner = new StickyPartitioner();
+        partitioner.configure(Collections.<String, Object>emptyMap());
+        Cluster cluster = cluster(2, -1);
+        byte[] value = new byte[StickyPartitioner.DEFAULT_BATCH_SIZE / 4];
+        int first = partitioner.partition(TOPIC, null, null, null, value, cluster);
+        for (int i = 1; i < 4; i++) {
+            assertEquals(first, partitioner.partition(TOPIC, null, null, null, value, cluster));
+        }
+        assertEquals(1 - first, partitioner.partition(TOPIC, null, null, null, value, cluster));
+    }
+
+    private static StickyPartitioner partitioner(int batchSize) {
+        StickyPartitioner partitioner = new StickyPartitioner();
+        Map<String, Object> configs = new HashMap<>();
+        configs.put(StickyPartitioner.BATCH_SIZE, batchSize);
+        partitioner.configure(configs);
+        return partitioner;
+    }
+
+    /**
+     * @param unavailablePartition partition without a leader, -1 if all partitions have one
+     */
+    static Cluster cluster(int partitionCount, int unavailablePartition) {
+        Node node = new Node(0, "localhost", 9092);
+        List<PartitionInfo> partitions = new ArrayList<>(partitionCount);
+        for (int i = 0; i < partitionCount; i++) {
+            partitions.add(new PartitionInfo(TOPIC, i, i == unavailablePartition ? null : node, new Node[]{node},
+                    new Node[]{node}));
+        }
+        return new Cluster(Collections.singletonList(node), partitions, Collections.<String>emptySet());
+    }
+}